@@ -0,0 +1,124 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.ChatApplication;
+import com.example.chat.model.Chat;
+import com.example.chat.model.ChatMember;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.repository.ChatMemberRepository;
+import com.example.chat.repository.ChatRepository;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.service.InboxService;
+import com.example.chat.service.MessageService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The whole application on an in-memory H2 database, plus helpers to fill it.
+ * Each benchmark trial starts its own instance, so trials never see each other's data.
+ */
+final class BenchmarkServer implements AutoCloseable {
+
+    private static final AtomicInteger USER_SEQUENCE = new AtomicInteger();
+    // Fixed vocabulary, so message content (and what search finds) is the same on every run
+    static final List<String> WORDS = vocabulary(2000);
+
+    private final ConfigurableApplicationContext context;
+    private final Random random = new Random(42);
+
+    private BenchmarkServer(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    static BenchmarkServer start(String... properties) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ChatApplication.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "spring.h2.console.enabled=false",
+                        "spring.main.banner-mode=off",
+                        "server.port=0",
+                        "logging.level.root=WARN")
+                .properties(properties)
+                .run();
+        return new BenchmarkServer(context);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    List<User> users(String prefix, int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new User(prefix + "-" + USER_SEQUENCE.incrementAndGet(), "password"));
+        }
+        return bean(UserRepository.class).saveAll(users);
+    }
+
+    // Same rows the create-private / create-group endpoints write, without the HTTP layer
+    Chat chat(String name, List<User> members) {
+        Chat chat = new Chat();
+        chat.setChatName(name);
+        chat.setCreator(members.get(0));
+        chat = bean(ChatRepository.class).save(chat);
+
+        List<ChatMember> rows = new ArrayList<>(members.size());
+        for (User member : members) {
+            rows.add(new ChatMember(chat.getId(), member.getId()));
+        }
+        bean(ChatMemberRepository.class).saveAll(rows);
+        bean(InboxService.class).chatCreated(chat, members);
+        return chat;
+    }
+
+    // Through MessageService, so the inbox and the search index are maintained as in production
+    void messages(Chat chat, List<User> authors, int count) {
+        MessageService messageService = bean(MessageService.class);
+        List<Message> batch = new ArrayList<>(1000);
+        for (int i = 0; i < count; i++) {
+            batch.add(new Message(sentence(8), authors.get(i % authors.size()), chat));
+            if (batch.size() == 1000) {
+                messageService.saveAll(batch);
+                batch = new ArrayList<>(1000);
+            }
+        }
+        if (!batch.isEmpty()) messageService.saveAll(batch);
+    }
+
+    // Skewed towards the first words, like natural language: a few terms are in most messages
+    String sentence(int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            double r = random.nextDouble();
+            sb.append(WORDS.get((int) (r * r * r * WORDS.size())));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private static List<String> vocabulary(int size) {
+        List<String> words = new ArrayList<>(size);
+        String letters = "abcdefghijklmnopqrstuvwxyz";
+        for (int i = 0; i < size; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int n = i; word.length() < 3 || n > 0; n /= letters.length()) {
+                word.append(letters.charAt(n % letters.length()));
+            }
+            words.add(word.toString());
+        }
+        return words;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.controller.ChatController;
+import com.example.chat.model.Chat;
+import com.example.chat.model.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// GET /api/chats/user/{userId} for a user with a growing number of chats, each with a few messages
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ChatListBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int chats;
+
+    private BenchmarkServer server;
+    private ChatController chatController;
+    private Long userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchmarkServer.start();
+        User owner = server.users("owner", 1).get(0);
+        List<User> others = server.users("peer", chats);
+        for (User other : others) {
+            List<User> members = List.of(owner, other);
+            Chat chat = server.chat("Private Chat", members);
+            server.messages(chat, members, 3);
+        }
+
+        chatController = server.bean(ChatController.class);
+        userId = owner.getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> getUserChats() {
+        return chatController.getUserChats(userId);
+    }
+}
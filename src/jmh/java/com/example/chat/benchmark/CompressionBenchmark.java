@@ -0,0 +1,119 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.controller.ChatController;
+import com.example.chat.controller.MessageController;
+import com.example.chat.model.Chat;
+import com.example.chat.model.User;
+import com.example.chat.service.FrameCompression;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * CPU cost of compressing the payloads we actually send: one broadcast /chat frame, a 50 message history page
+ * and a 50 chat list, the JSON taken from the real controllers. The sizes on the wire (raw, deflated at the
+ * benchmarked level, gzip as server.compression sends it) are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CompressionBenchmark {
+
+    @Param({"message", "historyPage", "chatList"})
+    public String payload;
+
+    // 1 = chat.websocket.compression.level default, 6 = zlib default
+    @Param({"1", "6"})
+    public int level;
+
+    private byte[] raw;
+    private byte[] deflated;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper mapper = new ObjectMapper();
+        try (BenchmarkServer server = BenchmarkServer.start()) {
+            User owner = server.users("owner", 1).get(0);
+            List<User> others = server.users("peer", 50);
+            Chat busiest = null;
+            for (User other : others) {
+                List<User> members = List.of(owner, other);
+                Chat chat = server.chat("Private Chat", members);
+                server.messages(chat, members, busiest == null ? 50 : 1);
+                if (busiest == null) busiest = chat;
+            }
+
+            raw = switch (payload) {
+                case "message" -> mapper.writeValueAsBytes(broadcastFrame(server, busiest, owner));
+                case "historyPage" -> mapper.writeValueAsBytes(
+                        server.bean(MessageController.class).getHistoryPage(busiest.getId(), null, null, 50).getBody());
+                case "chatList" -> mapper.writeValueAsBytes(server.bean(ChatController.class).getUserChats(owner.getId()));
+                default -> throw new IllegalArgumentException(payload);
+            };
+        }
+        deflated = FrameCompression.deflate(raw, level);
+        System.out.printf("%n%s: %d bytes raw, %d deflated (level %d), %d gzip%n",
+                payload, raw.length, deflated.length, level, gzip(raw).length);
+    }
+
+    @Benchmark
+    public byte[] deflate() {
+        return FrameCompression.deflate(raw, level);
+    }
+
+    // What ChatClient does with a compressed frame
+    @Benchmark
+    public String inflate() throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(deflated);
+            byte[] out = new byte[raw.length];
+            int length = inflater.inflate(out);
+            return new String(out, 0, length, StandardCharsets.UTF_8);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Same keys as ChatEvents' message frame
+    private static Map<String, Object> broadcastFrame(BenchmarkServer server, Chat chat, User author) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "message");
+        frame.put("id", 123456L);
+        frame.put("seq", 51L);
+        frame.put("chatId", chat.getId());
+        frame.put("authorId", author.getId());
+        frame.put("author", author.getUsername());
+        frame.put("content", server.sentence(8));
+        frame.put("time", now.format(DateTimeFormatter.ofPattern("HH:mm")));
+        frame.put("sentAt", now.toString());
+        return frame;
+    }
+
+    private static byte[] gzip(byte[] input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(input);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
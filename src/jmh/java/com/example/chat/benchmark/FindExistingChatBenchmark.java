@@ -0,0 +1,58 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.User;
+import com.example.chat.repository.ChatRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// The lookup create-private does before making a new chat, for a user with many private chats
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FindExistingChatBenchmark {
+
+    @Param({"10", "1000"})
+    public int chatsPerUser;
+
+    private BenchmarkServer server;
+    private ChatRepository chatRepository;
+    private Long userId;
+    private Long lastPeerId;
+    private Long strangerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchmarkServer.start();
+        User owner = server.users("owner", 1).get(0);
+        List<User> peers = server.users("peer", chatsPerUser);
+        for (User peer : peers) {
+            server.chat("Private Chat", List.of(owner, peer));
+        }
+
+        chatRepository = server.bean(ChatRepository.class);
+        userId = owner.getId();
+        lastPeerId = peers.get(peers.size() - 1).getId();
+        strangerId = server.users("stranger", 1).get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public Optional<Long> existingChat() {
+        return chatRepository.findExistingChatBetweenUsers(userId, lastPeerId);
+    }
+
+    @Benchmark
+    public Optional<Long> noChat() {
+        return chatRepository.findExistingChatBetweenUsers(userId, strangerId);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.controller.ChatController;
+import com.example.chat.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// POST /api/chats/create-group without the HTTP layer: user lookup, chat, membership and inbox rows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GroupCreationBenchmark {
+
+    @Param({"10", "300"})
+    public int members;
+
+    private BenchmarkServer server;
+    private ChatController chatController;
+    private Long creatorId;
+    private List<String> usernames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchmarkServer.start();
+        chatController = server.bean(ChatController.class);
+        creatorId = server.users("creator", 1).get(0).getId();
+        usernames = server.users("member", members).stream().map(User::getUsername).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> createGroup() {
+        return chatController.createGroupChat(creatorId, "Benchmark group", usernames);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.controller.MessageController;
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.store.MessageStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Paging through a chat (/api/messages/{chatId}/page): opening it on the latest page, and one page further back
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HistoryBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int messages;
+
+    private BenchmarkServer server;
+    private MessageController messageController;
+    private Long chatId;
+    // Cursor halfway through the chat, where scrolling back lands after a while
+    private Long middleId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchmarkServer.start();
+        List<User> users = server.users("author", 2);
+        Chat chat = server.chat("Private Chat", users);
+        server.messages(chat, users, messages);
+
+        messageController = server.bean(MessageController.class);
+        chatId = chat.getId();
+        List<Message> newerHalf = server.bean(MessageStore.class).pageBefore(chatId, Long.MAX_VALUE, messages / 2);
+        middleId = newerHalf.get(newerHalf.size() - 1).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public Object latestPage() {
+        return messageController.getHistoryPage(chatId, null, null, 50).getBody();
+    }
+
+    @Benchmark
+    public Object olderPage() {
+        return messageController.getHistoryPage(chatId, middleId, null, 50).getBody();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.config.ChatWebSocketHandler;
+import com.example.chat.model.Chat;
+import com.example.chat.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One inbound /chat frame: JSON parse, user/chat lookup, persist (inbox and search index included)
+ * and fan-out to every session of the chat's members.
+ * Fan-out is measured up to the per-session outbound queues; the sends themselves run on the send pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessagePathBenchmark {
+
+    @Param({"2", "20", "200"})
+    public int members;
+
+    @Param({"1", "3"})
+    public int sessionsPerMember;
+
+    @Param({"sync", "write-behind"})
+    public String persistence;
+
+    private BenchmarkServer server;
+    private ChatWebSocketHandler handler;
+    private FakeWebSocketSession sender;
+    private TextMessage frame;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = BenchmarkServer.start("chat.persistence.mode=" + persistence);
+        List<User> users = server.users("member", members);
+        Chat chat = server.chat("Benchmark group", users);
+
+        handler = server.bean(ChatWebSocketHandler.class);
+        List<FakeWebSocketSession> sessions = new ArrayList<>();
+        for (User user : users) {
+            for (int i = 0; i < sessionsPerMember; i++) {
+                FakeWebSocketSession session = new FakeWebSocketSession(user.getId());
+                handler.afterConnectionEstablished(session);
+                sessions.add(session);
+            }
+        }
+        sender = sessions.get(0);
+        frame = new TextMessage(String.format("{\"authorId\": %d, \"chatId\": %d, \"content\": \"%s\"}",
+                users.get(0).getId(), chat.getId(), server.sentence(8)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public void handleTextMessage() throws Exception {
+        handler.handleMessage(sender, frame);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.store.MessageStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The storage engines side by side (chat.storage.engine): appends and history scans.
+ * H2 runs in memory and the segment engine skips fsync, so neither pays for durability here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageStoreBenchmark {
+
+    @Param({"jpa", "segment"})
+    public String engine;
+
+    @Param({"10000"})
+    public int history;
+
+    private BenchmarkServer server;
+    private MessageStore store;
+    private User author;
+    private Chat chat;
+    private String content;
+    private Path segmentDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        segmentDir = Files.createTempDirectory("bench-segments");
+        server = BenchmarkServer.start(
+                "chat.storage.engine=" + engine,
+                "chat.storage.segment.dir=" + segmentDir,
+                "chat.storage.segment.fsync=false");
+        List<User> users = server.users("author", 1);
+        author = users.get(0);
+        chat = server.chat("Benchmark group", users);
+
+        store = server.bean(MessageStore.class);
+        content = server.sentence(8);
+        List<Message> batch = new ArrayList<>(history);
+        for (int i = 0; i < history; i++) {
+            batch.add(new Message(server.sentence(8), author, chat));
+        }
+        store.append(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+        try (Stream<Path> files = Files.walk(segmentDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<Message> appendOne() {
+        return store.append(List.of(new Message(content, author, chat)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public List<Message> appendBatchOf100() {
+        List<Message> batch = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            batch.add(new Message(content, author, chat));
+        }
+        return store.append(batch);
+    }
+
+    @Benchmark
+    public List<Message> latestPage() {
+        return store.pageBefore(chat.getId(), Long.MAX_VALUE, 50);
+    }
+
+    @Benchmark
+    public List<Message> fullScan() {
+        return store.pageAfter(chat.getId(), 0L, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.service.MessageSearchService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search query latency over the message_terms index.
+ * The 10M-message point takes a long setup: -Djmh.args="Search -p messages=10000000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchBenchmark {
+
+    private static final int CHATS = 100;
+
+    @Param({"100000", "1000000"})
+    public int messages;
+
+    private BenchmarkServer server;
+    private MessageSearchService searchService;
+    private Long userId;
+    private Long chatId;
+    // A common word, a rare word, and two words together
+    private final String common = BenchmarkServer.WORDS.get(0);
+    private final String rare = BenchmarkServer.WORDS.get(BenchmarkServer.WORDS.size() - 1);
+    private final String pair = BenchmarkServer.WORDS.get(1) + " " + BenchmarkServer.WORDS.get(20);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchmarkServer.start();
+        List<User> users = server.users("member", 10);
+        List<Chat> chats = new ArrayList<>(CHATS);
+        for (int i = 0; i < CHATS; i++) {
+            chats.add(server.chat("Group " + i, users));
+        }
+        for (Chat chat : chats) {
+            server.messages(chat, users, messages / CHATS);
+        }
+
+        searchService = server.bean(MessageSearchService.class);
+        userId = users.get(0).getId();
+        chatId = chats.get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public List<Message> userChatsCommonTerm() {
+        return searchService.searchUserChats(userId, common, 0, 50);
+    }
+
+    @Benchmark
+    public List<Message> userChatsRareTerm() {
+        return searchService.searchUserChats(userId, rare, 0, 50);
+    }
+
+    @Benchmark
+    public List<Message> userChatsTwoTerms() {
+        return searchService.searchUserChats(userId, pair, 0, 50);
+    }
+
+    @Benchmark
+    public List<Message> oneChatCommonTerm() {
+        return searchService.searchChat(chatId, common, 0, 50);
+    }
+}
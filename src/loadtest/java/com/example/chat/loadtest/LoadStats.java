@@ -0,0 +1,49 @@
+package com.example.chat.loadtest;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters shared by all simulated clients. Histograms cover the whole run.
+final class LoadStats {
+
+    final LongAdder setupErrors = new LongAdder();
+    final LongAdder sent = new LongAdder();
+    // Frames the server should fan out: one per member session of the target chat
+    final LongAdder expectedDeliveries = new LongAdder();
+    final LongAdder delivered = new LongAdder();
+    final LongAdder sendErrors = new LongAdder();
+    final LongAdder serverErrors = new LongAdder();
+    final LongAdder badFrames = new LongAdder();
+    final LongAdder disconnects = new LongAdder();
+    final LongAdder polls = new LongAdder();
+    final LongAdder pollErrors = new LongAdder();
+    final LongAdder typingSent = new LongAdder();
+    final LongAdder reconnects = new LongAdder();
+
+    // Every frame received, by type. Bytes are the JSON's characters (the load test asks for no compression).
+    final FrameCount messageFrames = new FrameCount();
+    final FrameCount presenceFrames = new FrameCount();
+    final FrameCount typingFrames = new FrameCount();
+    final FrameCount otherFrames = new FrameCount();
+
+    final LatencyHistogram deliveryLatency = new LatencyHistogram();
+    final LatencyHistogram pollLatency = new LatencyHistogram();
+
+    FrameCount framesOf(String type) {
+        return switch (type) {
+            case "message" -> messageFrames;
+            case "presence" -> presenceFrames;
+            case "typing" -> typingFrames;
+            default -> otherFrames;
+        };
+    }
+
+    static final class FrameCount {
+        final LongAdder frames = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+
+        void record(int length) {
+            frames.increment();
+            bytes.add(length);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.chat.loadtest;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end load and soak harness for a locally running server.
+ *
+ * 1. Registers and logs in N users through /api/auth
+ * 2. Creates private and group chats through /api/chats/create-*
+ * 3. Opens one /chat WebSocket per user
+ * 4. Sends messages at a fixed total rate into random chats, while some users poll
+ *    their chat list the way the dashboard used to
+ * 5. Optionally sends typing events and closes and reopens sockets (churn), so the presence
+ *    and typing frames can be weighed against the message frames
+ *
+ * Every interval it prints throughput, delivery latency (send to receive, at every member session),
+ * frames received by type, errors and the server's heap/GC from /api/admin/runtime.
+ * The final numbers go to a JSON report.
+ */
+public final class LoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final LoadTestOptions options;
+    private final LoadStats stats = new LoadStats();
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newFixedThreadPool(8))
+            .build();
+    private final Random random = new Random(7);
+    private final List<SimulatedClient> clients = new ArrayList<>();
+    // Key: Chat ID, Value: members (each has one session here, unless churned away just now)
+    private final Map<Long, List<SimulatedClient>> chatMembers = new ConcurrentHashMap<>();
+    // Churned clients stay away longer than the server's presence flush, so each one is an offline and an online
+    private static final long CHURN_AWAY_MS = 3_000;
+    private final List<Map<String, Object>> runtimeSamples = Collections.synchronizedList(new ArrayList<>());
+
+    private LoadTest(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(LoadTestOptions.parse(args)).run();
+        System.exit(0); // HTTP client threads are not daemons
+    }
+
+    private void run() throws Exception {
+        long setupStart = System.nanoTime();
+        registerUsers();
+        createChats();
+        connectSockets();
+        System.out.printf("Setup: %d users, %d chats, %d sockets in %d s%n", clients.size(), chatMembers.size(),
+                clients.stream().filter(SimulatedClient::isConnected).count(),
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - setupStart));
+
+        drive();
+
+        for (SimulatedClient client : clients) {
+            client.close();
+        }
+        writeReport();
+    }
+
+    // --- SETUP ---
+
+    private void registerUsers() {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<Supplier<CompletableFuture<?>>> tasks = new ArrayList<>();
+        List<SimulatedClient> created = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < options.users; i++) {
+            String username = "lt-" + runId + "-" + i;
+            String body = String.format("{\"username\":\"%s\", \"password\":\"%s\"}", username, "load-test");
+            tasks.add(() -> post("/api/auth/register", body)
+                    .thenCompose(registered -> post("/api/auth/login", body))
+                    .thenAccept(login -> {
+                        if (login.statusCode() != 200) throw new IllegalStateException("Login failed for " + username);
+                        created.add(new SimulatedClient(Long.parseLong(login.body().trim()), username, stats));
+                    }));
+        }
+        runLimited(tasks);
+        clients.addAll(created);
+        if (clients.size() < 2) throw new IllegalStateException("Could not set up users, is the server running?");
+    }
+
+    private void createChats() {
+        List<Supplier<CompletableFuture<?>>> tasks = new ArrayList<>();
+        for (SimulatedClient creator : clients) {
+            for (int i = 0; i < options.privatePerUser; i++) {
+                SimulatedClient target = randomClientOtherThan(creator);
+                String path = "/api/chats/create-private?creatorId=" + creator.userId
+                        + "&targetUsername=" + encode(target.username);
+                tasks.add(() -> post(path, "").thenAccept(response -> chatCreated(response, List.of(creator, target))));
+            }
+        }
+        for (int g = 0; g < options.groups; g++) {
+            List<SimulatedClient> members = randomGroup();
+            SimulatedClient creator = members.get(0);
+            StringBuilder usernames = new StringBuilder("[");
+            for (SimulatedClient member : members.subList(1, members.size())) {
+                if (usernames.length() > 1) usernames.append(',');
+                usernames.append('"').append(member.username).append('"');
+            }
+            String body = usernames.append(']').toString();
+            String path = "/api/chats/create-group?creatorId=" + creator.userId + "&groupName=" + encode("Load group " + g);
+            tasks.add(() -> post(path, body).thenAccept(response -> chatCreated(response, members)));
+        }
+        runLimited(tasks);
+    }
+
+    private void chatCreated(HttpResponse<String> response, List<SimulatedClient> members) {
+        if (response.statusCode() != 200) {
+            stats.setupErrors.increment();
+            return;
+        }
+        long chatId = MAPPER.readTree(response.body()).path("id").asLong(-1);
+        if (chatId < 0 || chatMembers.putIfAbsent(chatId, List.copyOf(members)) != null) return; // Existing private chat
+        for (SimulatedClient member : members) {
+            member.chatIds.add(chatId);
+        }
+    }
+
+    private void connectSockets() {
+        List<Supplier<CompletableFuture<?>>> tasks = new ArrayList<>();
+        for (SimulatedClient client : clients) {
+            tasks.add(() -> connect(client));
+        }
+        runLimited(tasks);
+    }
+
+    private CompletableFuture<?> connect(SimulatedClient client) {
+        String wsBase = options.baseUrl.replaceFirst("^http", "ws");
+        return http.newWebSocketBuilder()
+                .buildAsync(URI.create(wsBase + "/chat?userId=" + client.userId), client)
+                .thenAccept(client::connected);
+    }
+
+    // --- LOAD ---
+
+    private void drive() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        String padding = "x".repeat(Math.max(0, options.messageBytes - 30));
+        List<SimulatedClient> senders = clients.stream().filter(c -> !c.chatIds.isEmpty()).toList();
+
+        // Sender: spreads the rate over 10 ms ticks
+        double perTick = options.rate / 100.0;
+        double[] credit = {0};
+        scheduler.scheduleAtFixedRate(() -> {
+            credit[0] += perTick;
+            ThreadLocalRandom r = ThreadLocalRandom.current();
+            while (credit[0] >= 1 && !senders.isEmpty()) {
+                credit[0]--;
+                SimulatedClient sender = senders.get(r.nextInt(senders.size()));
+                long chatId = sender.chatIds.get(r.nextInt(sender.chatIds.size()));
+                sender.send(chatId, padding);
+                stats.expectedDeliveries.add(connectedMembers(chatId));
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        // Typists and churn, spread over 10 ms ticks the same way
+        if (options.typingRate > 0) {
+            double typingPerTick = options.typingRate / 100.0;
+            double[] typingCredit = {0};
+            scheduler.scheduleAtFixedRate(() -> {
+                typingCredit[0] += typingPerTick;
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                while (typingCredit[0] >= 1 && !senders.isEmpty()) {
+                    typingCredit[0]--;
+                    SimulatedClient typist = senders.get(r.nextInt(senders.size()));
+                    typist.sendTyping(typist.chatIds.get(r.nextInt(typist.chatIds.size())));
+                }
+            }, 5, 10, TimeUnit.MILLISECONDS);
+        }
+        if (options.churn > 0) {
+            double churnPerTick = options.churn / 100.0;
+            double[] churnCredit = {0};
+            scheduler.scheduleAtFixedRate(() -> {
+                churnCredit[0] += churnPerTick;
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                while (churnCredit[0] >= 1) {
+                    churnCredit[0]--;
+                    SimulatedClient client = clients.get(r.nextInt(clients.size()));
+                    if (!client.isConnected()) continue;
+                    client.close();
+                    stats.reconnects.increment();
+                    scheduler.schedule(() -> connect(client).exceptionally(error -> {
+                        stats.disconnects.increment();
+                        return null;
+                    }), CHURN_AWAY_MS, TimeUnit.MILLISECONDS);
+                }
+            }, 7, 10, TimeUnit.MILLISECONDS);
+        }
+
+        // Dashboard pollers
+        int pollers = (int) Math.round(clients.size() * options.pollerShare);
+        long pollMs = options.pollInterval.toMillis();
+        if (pollMs > 0) {
+            for (SimulatedClient client : clients.subList(0, pollers)) {
+                scheduler.scheduleAtFixedRate(() -> poll(client), random.nextLong(pollMs), pollMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        long start = System.nanoTime();
+        long reportMs = options.reportInterval.toMillis();
+        scheduler.scheduleAtFixedRate(() -> report(start), reportMs, reportMs, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(options.duration.toMillis());
+        scheduler.shutdownNow();
+        Thread.sleep(2_000); // Let in-flight deliveries arrive
+        report(start);
+    }
+
+    private void poll(SimulatedClient client) {
+        long started = System.nanoTime();
+        http.sendAsync(HttpRequest.newBuilder(URI.create(options.baseUrl + "/api/chats/user/" + client.userId)).GET().build(),
+                HttpResponse.BodyHandlers.discarding()
+        ).whenComplete((response, error) -> {
+            stats.polls.increment();
+            if (error != null || response.statusCode() != 200) {
+                stats.pollErrors.increment();
+            } else {
+                stats.pollLatency.record((System.nanoTime() - started) / 1_000);
+            }
+        });
+    }
+
+    // --- REPORTING ---
+
+    private void report(long start) {
+        long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        Map<String, Object> runtime = sampleRuntime(elapsed);
+        LatencyHistogram latency = stats.deliveryLatency;
+        System.out.printf("[%5ds] sent %d (%.0f/s) delivered %d/%d  p50 %.1f ms p99 %.1f ms p99.9 %.1f ms  errors %d  heap %s MB gc %s%n",
+                elapsed, stats.sent.sum(), stats.sent.sum() / (double) elapsed,
+                stats.delivered.sum(), stats.expectedDeliveries.sum(),
+                latency.percentile(50) / 1000.0, latency.percentile(99) / 1000.0, latency.percentile(99.9) / 1000.0,
+                errorCount(),
+                runtime.isEmpty() ? "?" : (Long) runtime.get("heapUsed") / (1024 * 1024),
+                runtime.isEmpty() ? "?" : runtime.get("gcCount") + "/" + runtime.get("gcTimeMs") + "ms");
+        if (options.typingRate > 0 || options.churn > 0) {
+            long indicatorBytes = stats.presenceFrames.bytes.sum() + stats.typingFrames.bytes.sum();
+            long allBytes = indicatorBytes + stats.messageFrames.bytes.sum() + stats.otherFrames.bytes.sum();
+            System.out.printf("         frames/s message %.0f presence %.0f typing %.0f  presence+typing %.1f%% of bytes received%n",
+                    stats.messageFrames.frames.sum() / (double) elapsed,
+                    stats.presenceFrames.frames.sum() / (double) elapsed,
+                    stats.typingFrames.frames.sum() / (double) elapsed,
+                    allBytes == 0 ? 0.0 : 100.0 * indicatorBytes / allBytes);
+        }
+    }
+
+    private Map<String, Object> sampleRuntime(long elapsedSeconds) {
+        try {
+            HttpResponse<String> response = http.send(
+                    HttpRequest.newBuilder(URI.create(options.baseUrl + "/api/admin/runtime")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) return Map.of();
+
+            JsonNode node = MAPPER.readTree(response.body());
+            long gcCount = 0, gcTime = 0;
+            for (JsonNode gc : node.path("gc")) {
+                gcCount += gc.path("count").asLong();
+                gcTime += gc.path("timeMs").asLong();
+            }
+            Map<String, Object> sample = new LinkedHashMap<>();
+            sample.put("elapsedSeconds", elapsedSeconds);
+            sample.put("heapUsed", node.path("heapUsed").asLong());
+            sample.put("heapCommitted", node.path("heapCommitted").asLong());
+            sample.put("threads", node.path("threads").asInt());
+            sample.put("gcCount", gcCount);
+            sample.put("gcTimeMs", gcTime);
+            runtimeSamples.add(sample);
+            return sample;
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+
+    private long errorCount() {
+        return stats.setupErrors.sum() + stats.sendErrors.sum() + stats.serverErrors.sum()
+                + stats.badFrames.sum() + stats.disconnects.sum() + stats.pollErrors.sum();
+    }
+
+    private void writeReport() throws Exception {
+        Map<String, Object> errors = new LinkedHashMap<>();
+        errors.put("setup", stats.setupErrors.sum());
+        errors.put("send", stats.sendErrors.sum());
+        errors.put("serverErrorFrames", stats.serverErrors.sum());
+        errors.put("badFrames", stats.badFrames.sum());
+        errors.put("disconnects", stats.disconnects.sum());
+        errors.put("polls", stats.pollErrors.sum());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options.asMap());
+        report.put("sent", stats.sent.sum());
+        report.put("messagesPerSecond", stats.sent.sum() / (double) Math.max(1, options.duration.toSeconds()));
+        report.put("expectedDeliveries", stats.expectedDeliveries.sum());
+        report.put("delivered", stats.delivered.sum());
+        report.put("deliveryLatencyMicros", summary(stats.deliveryLatency));
+        report.put("polls", stats.polls.sum());
+        report.put("pollLatencyMicros", summary(stats.pollLatency));
+        report.put("typingSent", stats.typingSent.sum());
+        report.put("reconnects", stats.reconnects.sum());
+        Map<String, Object> frames = new LinkedHashMap<>();
+        frames.put("message", summary(stats.messageFrames));
+        frames.put("presence", summary(stats.presenceFrames));
+        frames.put("typing", summary(stats.typingFrames));
+        frames.put("other", summary(stats.otherFrames));
+        report.put("framesReceived", frames);
+        report.put("serverPresence", getJson("/api/admin/presence"));
+        report.put("errors", errors);
+        report.put("serverRuntime", runtimeSamples);
+
+        Path file = Path.of(options.report);
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+        System.out.println("Report written to " + file.toAbsolutePath());
+    }
+
+    // Totals, and per connected user and minute: what one client pays for the indicators
+    private Map<String, Object> summary(LoadStats.FrameCount count) {
+        double userMinutes = Math.max(1, clients.size()) * Math.max(1.0, options.duration.toSeconds() / 60.0);
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("frames", count.frames.sum());
+        map.put("bytes", count.bytes.sum());
+        map.put("framesPerUserMinute", count.frames.sum() / userMinutes);
+        map.put("bytesPerUserMinute", count.bytes.sum() / userMinutes);
+        return map;
+    }
+
+    private static Map<String, Object> summary(LatencyHistogram histogram) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", histogram.count());
+        map.put("mean", Math.round(histogram.mean()));
+        map.put("p50", histogram.percentile(50));
+        map.put("p90", histogram.percentile(90));
+        map.put("p99", histogram.percentile(99));
+        map.put("p99.9", histogram.percentile(99.9));
+        map.put("max", histogram.max());
+        return map;
+    }
+
+    // --- HELPERS ---
+
+    private CompletableFuture<HttpResponse<String>> post(String path, String body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(options.baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (!body.isEmpty()) request.header("Content-Type", "application/json");
+        return http.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Object getJson(String path) {
+        try {
+            HttpResponse<String> response = http.send(
+                    HttpRequest.newBuilder(URI.create(options.baseUrl + path)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 ? MAPPER.readTree(response.body()) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private int connectedMembers(long chatId) {
+        int connected = 0;
+        for (SimulatedClient member : chatMembers.getOrDefault(chatId, List.of())) {
+            if (member.isConnected()) connected++;
+        }
+        return connected;
+    }
+
+    // At most setupConcurrency requests in flight; failures are counted, not fatal
+    private void runLimited(List<Supplier<CompletableFuture<?>>> tasks) {
+        Semaphore permits = new Semaphore(options.setupConcurrency);
+        List<CompletableFuture<?>> running = new ArrayList<>(tasks.size());
+        for (Supplier<CompletableFuture<?>> task : tasks) {
+            permits.acquireUninterruptibly();
+            running.add(task.get().whenComplete((ignored, error) -> {
+                permits.release();
+                if (error != null) stats.setupErrors.increment();
+            }));
+        }
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+    }
+
+    private SimulatedClient randomClientOtherThan(SimulatedClient client) {
+        SimulatedClient other;
+        do {
+            other = clients.get(random.nextInt(clients.size()));
+        } while (other == client);
+        return other;
+    }
+
+    // Size between min and max; a skew above 1 makes small groups common and big ones rare
+    private List<SimulatedClient> randomGroup() {
+        int span = options.groupMaxSize - options.groupMinSize + 1;
+        int size = options.groupMinSize + (int) (Math.pow(random.nextDouble(), options.groupSkew) * span);
+        List<SimulatedClient> shuffled = new ArrayList<>(clients);
+        Collections.shuffle(shuffled, random);
+        return shuffled.subList(0, Math.min(size, shuffled.size()));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.chat.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings of a load run, given as key=value arguments, e.g.
+ * {@code users=2000 rate=500 duration=2h group-size=3-200 group-skew=3}, or for presence and typing traffic
+ * {@code users=10000 rate=100 typing-rate=500 churn=20}.
+ * Durations accept ms, s, m and h suffixes.
+ */
+final class LoadTestOptions {
+
+    String baseUrl = "http://localhost:8080";
+    // Users registered, logged in and connected, one WebSocket each
+    int users = 100;
+    // Private chats each user opens with random other users
+    int privatePerUser = 2;
+    int groups = 20;
+    int groupMinSize = 3;
+    int groupMaxSize = 50;
+    // 1 = group sizes uniform between min and max, higher = mostly small groups and a few big ones
+    double groupSkew = 1.0;
+    // Messages per second over all users
+    double rate = 50;
+    int messageBytes = 80;
+    // Share of users polling their chat list like the old dashboard did, and how often
+    double pollerShare = 0.5;
+    Duration pollInterval = Duration.ofSeconds(5);
+    // Typing events per second over all users, each into a random chat of the sender (what ChatClient sends while typing)
+    double typingRate = 0;
+    // Sockets closed and reopened per second, each change is an offline and an online for presence
+    double churn = 0;
+    Duration duration = Duration.ofMinutes(5);
+    Duration reportInterval = Duration.ofSeconds(10);
+    // Parallel requests while setting up users and chats
+    int setupConcurrency = 32;
+    String report = "target/loadtest-report.json";
+
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions o = new LoadTestOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Expected key=value, got " + arg);
+            String key = arg.substring(0, eq).replaceFirst("^--", "");
+            String value = arg.substring(eq + 1);
+            switch (key) {
+                case "base-url" -> o.baseUrl = value;
+                case "users" -> o.users = Integer.parseInt(value);
+                case "private-per-user" -> o.privatePerUser = Integer.parseInt(value);
+                case "groups" -> o.groups = Integer.parseInt(value);
+                case "group-size" -> {
+                    String[] range = value.split("-");
+                    o.groupMinSize = Integer.parseInt(range[0]);
+                    o.groupMaxSize = Integer.parseInt(range[range.length - 1]);
+                }
+                case "group-skew" -> o.groupSkew = Double.parseDouble(value);
+                case "rate" -> o.rate = Double.parseDouble(value);
+                case "message-bytes" -> o.messageBytes = Integer.parseInt(value);
+                case "poller-share" -> o.pollerShare = Double.parseDouble(value);
+                case "poll-interval" -> o.pollInterval = duration(value);
+                case "typing-rate" -> o.typingRate = Double.parseDouble(value);
+                case "churn" -> o.churn = Double.parseDouble(value);
+                case "duration" -> o.duration = duration(value);
+                case "report-interval" -> o.reportInterval = duration(value);
+                case "setup-concurrency" -> o.setupConcurrency = Integer.parseInt(value);
+                case "report" -> o.report = value;
+                default -> throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+        if (o.users < 2) throw new IllegalArgumentException("Need at least 2 users");
+        o.groupMaxSize = Math.min(o.groupMaxSize, o.users);
+        o.groupMinSize = Math.max(2, Math.min(o.groupMinSize, o.groupMaxSize));
+        return o;
+    }
+
+    Map<String, Object> asMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("baseUrl", baseUrl);
+        map.put("users", users);
+        map.put("privatePerUser", privatePerUser);
+        map.put("groups", groups);
+        map.put("groupSize", groupMinSize + "-" + groupMaxSize);
+        map.put("groupSkew", groupSkew);
+        map.put("rate", rate);
+        map.put("messageBytes", messageBytes);
+        map.put("pollerShare", pollerShare);
+        map.put("pollIntervalMs", pollInterval.toMillis());
+        map.put("typingRate", typingRate);
+        map.put("churn", churn);
+        map.put("durationMs", duration.toMillis());
+        return map;
+    }
+
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> Duration.ofSeconds(Long.parseLong(value));
+        };
+    }
+}
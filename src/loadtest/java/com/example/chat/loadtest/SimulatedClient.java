@@ -0,0 +1,132 @@
+package com.example.chat.loadtest;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.net.http.WebSocket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One simulated user: an open /chat socket and the chats the user is in.
+ * Message content starts with "lt <nanoTime>", so every receiver can compute send-to-receive latency
+ * (all clients live in this JVM and share the same clock).
+ */
+final class SimulatedClient implements WebSocket.Listener {
+
+    static final String MARKER = "lt ";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    final long userId;
+    final String username;
+    final List<Long> chatIds = new CopyOnWriteArrayList<>();
+
+    private final LoadStats stats;
+    private final StringBuilder partial = new StringBuilder();
+    private volatile WebSocket socket;
+    // The JDK WebSocket allows one outstanding send, so sends are chained
+    private CompletableFuture<?> lastSend = CompletableFuture.completedFuture(null);
+
+    SimulatedClient(long userId, String username, LoadStats stats) {
+        this.userId = userId;
+        this.username = username;
+        this.stats = stats;
+    }
+
+    synchronized void connected(WebSocket socket) {
+        this.socket = socket;
+    }
+
+    boolean isConnected() {
+        WebSocket ws = socket;
+        return ws != null && !ws.isOutputClosed();
+    }
+
+    synchronized void send(long chatId, String padding) {
+        WebSocket ws = socket;
+        if (ws == null) return;
+        String content = MARKER + System.nanoTime() + " " + padding;
+        String frame = String.format("{\"authorId\": %d, \"chatId\": %d, \"content\": \"%s\"}", userId, chatId, content);
+        lastSend = lastSend.thenCompose(ignored -> ws.sendText(frame, true))
+                .exceptionally(error -> {
+                    stats.sendErrors.increment();
+                    return null;
+                });
+        stats.sent.increment();
+    }
+
+    synchronized void sendTyping(long chatId) {
+        WebSocket ws = socket;
+        if (ws == null) return;
+        String frame = String.format("{\"type\": \"typing\", \"chatId\": %d}", chatId);
+        lastSend = lastSend.thenCompose(ignored -> ws.sendText(frame, true))
+                .exceptionally(error -> {
+                    stats.sendErrors.increment();
+                    return null;
+                });
+        stats.typingSent.increment();
+    }
+
+    // Stops sending right away, the close handshake finishes in the background
+    synchronized void close() {
+        WebSocket ws = socket;
+        socket = null;
+        if (ws != null) ws.sendClose(WebSocket.NORMAL_CLOSURE, "Load test done");
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            long now = System.nanoTime();
+            String frame = partial.toString();
+            partial.setLength(0);
+            onFrame(frame, now);
+        }
+        return WebSocket.Listener.super.onText(webSocket, data, last);
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        if (statusCode != WebSocket.NORMAL_CLOSURE) stats.disconnects.increment();
+        forget(webSocket);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        stats.disconnects.increment();
+        forget(webSocket);
+    }
+
+    // A churned client may already be on its next socket when the old one reports closing
+    private synchronized void forget(WebSocket webSocket) {
+        if (socket == webSocket) socket = null;
+    }
+
+    private void onFrame(String frame, long receivedAt) {
+        JsonNode event;
+        try {
+            event = MAPPER.readTree(frame);
+        } catch (RuntimeException e) {
+            stats.badFrames.increment();
+            return;
+        }
+        String type = event.path("type").asString("");
+        stats.framesOf(type).record(frame.length());
+        if (type.equals("error")) {
+            stats.serverErrors.increment();
+            return;
+        }
+        if (!type.equals("message")) return;
+
+        String content = event.path("content").asString("");
+        if (!content.startsWith(MARKER)) return;
+        int end = content.indexOf(' ', MARKER.length());
+        long sentAt = Long.parseLong(content.substring(MARKER.length(), end < 0 ? content.length() : end));
+        stats.delivered.increment();
+        stats.deliveryLatency.record((receivedAt - sentAt) / 1_000);
+    }
+}
@@ -1,23 +1,49 @@
 package com.example.chat;
 
 import com.example.chat.config.ChatWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistration;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final ChatWebSocketHandler chatWebSocketHandler;
+    private final boolean perMessageDeflate;
 
-    public WebSocketConfig(ChatWebSocketHandler chatWebSocketHandler) {
+    public WebSocketConfig(ChatWebSocketHandler chatWebSocketHandler,
+                           @Value("${chat.websocket.permessage-deflate:true}") boolean perMessageDeflate) {
         this.chatWebSocketHandler = chatWebSocketHandler;
+        this.perMessageDeflate = perMessageDeflate;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(chatWebSocketHandler, "/chat").setAllowedOrigins("*");
+        WebSocketHandlerRegistration registration = registry.addHandler(chatWebSocketHandler, "/chat").setAllowedOrigins("*");
+        if (!perMessageDeflate) {
+            registration.setHandshakeHandler(new DefaultHandshakeHandler(withoutExtensions()));
+        }
+    }
+
+    // Tomcat negotiates permessage-deflate with every client that offers it (browsers do). It compresses
+    // every frame, however small, with a deflater per session. Turning it off leaves compression to the
+    // opt-in, size-thresholded FrameCompression.
+    private static StandardWebSocketUpgradeStrategy withoutExtensions() {
+        return new StandardWebSocketUpgradeStrategy() {
+            @Override
+            public List<WebSocketExtension> getSupportedExtensions(ServerHttpRequest request) {
+                return List.of();
+            }
+        };
     }
 }
@@ -1,8 +1,11 @@
 package com.example.chat.client;
 
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.geometry.Side;
@@ -10,25 +13,84 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.net.http.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class ChatClient extends Application {
 
+    private static final Logger log = LoggerFactory.getLogger(ChatClient.class);
+
+    // Only the latest page is loaded when a chat opens without a local copy
+    private static final int HISTORY_PAGE_SIZE = 100;
+    // Catch-up after the cached messages; past this many pages the latest page is loaded instead
+    private static final int CATCH_UP_PAGE_SIZE = 200;
+    private static final int MAX_CATCH_UP_PAGES = 5;
+
     private Stage primaryStage;
     private WebSocket ws;
-    private ListView<HBox> chatListView;
+    // The JDK WebSocket allows one outstanding send, so sends are chained (FX thread only)
+    private CompletableFuture<?> lastSend = CompletableFuture.completedFuture(null);
+    // Shared by every request of the current login session
+    private ChatHttp http = new ChatHttp();
+    // On-disk copy of the logged-in user's chats and messages
+    private LocalStore store;
+    private ListView<ChatLine> chatListView;
     private TextField input;
+    private ListView<ChatEntry> dashboardList;
+    // Under the chat name: "online" for a private chat's peer, or who is typing
+    private Label chatStatusLabel;
+    private String currentChatName;
 
     private long currentUserId;
     private String currentUsername;
     private long currentChatId = -1;
     private boolean isInChat = false;
-    private Timeline dashboardFilter;
+    // Newest message id in the chat view, 0 when none is known
+    private long lastShownId = 0;
+
+    // Chat list model, kept current by server events while logged in
+    private final ObservableList<ChatEntry> chatEntries = FXCollections.observableArrayList();
+    // Full reload needed (after login or a WebSocket reconnect)
+    private boolean chatListStale = true;
+    private static final Comparator<ChatEntry> NEWEST_FIRST = (a, b) -> b.lastTime.compareTo(a.lastTime);
+
+    // Key: Chat ID, Value: highest seq received over the WebSocket, sent back on reconnect to resume from there
+    private final Map<Long, Long> lastSeqs = new HashMap<>();
+    // Message frames held back while the server replays what we missed, null when not resuming
+    private List<ClientJson.ServerEvent> resumeBuffer;
+
+    // Usernames the server reports online among the people we share a chat with
+    private final Set<String> onlineUsers = new HashSet<>();
+    // Key: Chat ID, Value: who else is typing there (from the last typing frame)
+    private final Map<Long, List<String>> typingByChat = new HashMap<>();
+    // When we last told the server we are typing, 0 when we are not. The server takes one every 2 s
+    // and forgets it after 6 s, so one per TYPING_EVERY_MS keeps the indicator up without being dropped.
+    private long typingSentAt = 0;
+    private static final long TYPING_EVERY_MS = 3000;
+
+    // Messages waiting to be shown; flushed into the chat view at most once per frame
+    private final ConcurrentLinkedQueue<ChatLine> pendingLines = new ConcurrentLinkedQueue<>();
+    private final AnimationTimer uiPump = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flushPendingLines();
+        }
+    };
 
     @Override
     public void start(Stage stage) {
@@ -39,6 +101,7 @@ public class ChatClient extends Application {
         primaryStage.setWidth(350);
         primaryStage.setHeight(500);
 
+        uiPump.start();
         showLoginScreen();
     }
 
@@ -78,8 +141,8 @@ public class ChatClient extends Application {
     }
 
     private void sendAuthRequest(String endpoint, String json, String username) {
-        HttpClient.newHttpClient().sendAsync(
-                HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/api/auth/" + endpoint))
+        http.send(
+                http.request("/api/auth/" + endpoint)
                         .header("Content-Type", "application/json")
                         .POST(HttpRequest.BodyPublishers.ofString(json)).build(),
                 HttpResponse.BodyHandlers.ofString()
@@ -89,6 +152,7 @@ public class ChatClient extends Application {
                     this.currentUserId = Long.parseLong(response.body());
                     this.currentUsername = username;
                     Platform.runLater(() -> {
+                        openStore(username);
                         connectWebSocket();
                         showDashboard();
                     });
@@ -100,12 +164,16 @@ public class ChatClient extends Application {
     }
 
     private void handleLogout() {
-        if (dashboardFilter != null) dashboardFilter.stop();
-
         // Clear session info
         this.currentUserId = -1;
         this.currentUsername = null;
         this.isInChat = false;
+        this.chatEntries.clear();
+        this.chatListStale = true;
+        this.lastSeqs.clear();
+        this.resumeBuffer = null;
+        this.onlineUsers.clear();
+        this.typingByChat.clear();
 
         // Close WebSocket if exists
         if (ws != null) {
@@ -113,6 +181,15 @@ public class ChatClient extends Application {
             ws = null;
         }
 
+        // What this session's requests cost, then a fresh client for the next login
+        logLatency();
+        http.close();
+        http = new ChatHttp();
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+
         showLoginScreen();
     }
 
@@ -121,9 +198,6 @@ public class ChatClient extends Application {
         this.isInChat = false;
         this.currentChatId = -1;
 
-        // Stop previous timer to prevent memory leaks or duplicate refreshes
-        if (dashboardFilter != null) dashboardFilter.stop();
-
         VBox dashboard = new VBox(15);
         dashboard.setPadding(new Insets(20));
         dashboard.setAlignment(Pos.TOP_CENTER);
@@ -146,7 +220,8 @@ public class ChatClient extends Application {
         header.getChildren().addAll(welcomeLabel, spacer, logoutBtn);
         // ------------------------------
 
-        ListView<ChatEntry> chatListViewObj = new ListView<>();
+        ListView<ChatEntry> chatListViewObj = new ListView<>(chatEntries);
+        dashboardList = chatListViewObj;
         VBox.setVgrow(chatListViewObj, Priority.ALWAYS); // List expands to fill space
 
         chatListViewObj.setCellFactory(lv -> new ListCell<ChatEntry>() {
@@ -158,7 +233,8 @@ public class ChatClient extends Application {
                     setText(null);
                 } else {
                     VBox container = new VBox(2);
-                    Label nameLabel = new Label(item.name);
+                    // A private chat is named after the peer, so a name that is online marks it
+                    Label nameLabel = new Label(onlineUsers.contains(item.name) ? "\u25CF " + item.name : item.name);
                     Label msgLabel = new Label(item.lastMsg);
 
                     nameLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold;");
@@ -176,22 +252,13 @@ public class ChatClient extends Application {
             }
         });
 
-        fetchUserChats(chatListViewObj);
-
-        // AUTO-REFRESH LOGIC
-        dashboardFilter = new Timeline(
-                new javafx.animation.KeyFrame(javafx.util.Duration.seconds(5), e -> {
-                    if (!isInChat) fetchUserChats(chatListViewObj);
-                })
-        );
-        dashboardFilter.setCycleCount(Timeline.INDEFINITE);
-        dashboardFilter.play();
+        // The list follows server events; only reload it when we may have missed some
+        if (chatListStale) fetchUserChats();
 
         chatListViewObj.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2) {
                 ChatEntry selected = chatListViewObj.getSelectionModel().getSelectedItem();
                 if (selected != null) {
-                    dashboardFilter.stop();
                     showChatScreen(selected.id, selected.name);
                 }
             }
@@ -215,9 +282,8 @@ public class ChatClient extends Application {
 
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                HttpClient.newHttpClient().sendAsync(
-                        HttpRequest.newBuilder()
-                                .uri(URI.create("http://localhost:8080/api/chats/" + chatId))
+                http.send(
+                        http.request("/api/chats/" + chatId)
                                 .DELETE()
                                 .build(),
                         HttpResponse.BodyHandlers.ofString()
@@ -238,19 +304,17 @@ public class ChatClient extends Application {
     // --- CHAT SCREEN ---
     private void showChatScreen(long chatId, String chatName) {
         this.currentChatId = chatId;
+        this.currentChatName = chatName;
         this.isInChat = true;
+        this.lastShownId = 0;
+        this.typingSentAt = 0;
 
-        // NOTIFY SERVER CHAT IS READ
-        HttpClient.newHttpClient().sendAsync(
-                HttpRequest.newBuilder()
-                        .uri(URI.create("http://localhost:8080/api/chats/" + chatId + "/read/" + currentUserId))
-                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
-                HttpResponse.BodyHandlers.ofString()
-        );
-
-        if (dashboardFilter != null) dashboardFilter.stop();
+        markChatRead(chatId);
 
+        // Only the visible rows get nodes, cells are reused while scrolling
+        pendingLines.clear();
         chatListView = new ListView<>();
+        chatListView.setCellFactory(lv -> new MessageCell());
         VBox.setVgrow(chatListView, Priority.ALWAYS);
         chatListView.setStyle("-fx-background-color: #F4F4F4; -fx-control-inner-background: #F4F4F4;");
 
@@ -262,6 +326,7 @@ public class ChatClient extends Application {
         Button backBtn = new Button("← Back");
         backBtn.setOnAction(e -> {
             this.isInChat = false;
+            markChatRead(chatId); // Messages seen while the chat was open
             showDashboard();
         });
 
@@ -270,6 +335,11 @@ public class ChatClient extends Application {
         headerLabel.setMaxWidth(140); // Prevents text from pushing the window wide
         headerLabel.setTextOverrun(OverrunStyle.ELLIPSIS); // Adds "..." for long names
 
+        chatStatusLabel = new Label();
+        chatStatusLabel.setStyle("-fx-font-size: 11px; -fx-text-fill: #888888;");
+        VBox title = new VBox(0, headerLabel, chatStatusLabel);
+        updateChatStatus();
+
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
 
@@ -308,12 +378,13 @@ public class ChatClient extends Application {
             }
         });
 
-        header.getChildren().addAll(backBtn, headerLabel, spacer, optionsMenu);
+        header.getChildren().addAll(backBtn, title, spacer, optionsMenu);
 
         // --- INPUT AREA ---
         input = new TextField();
         input.setPromptText("Message...");
         input.setOnAction(e -> sendMessage());
+        input.textProperty().addListener((obs, old, text) -> typingChanged(text));
 
         Button sendBtn = new Button("Send");
         sendBtn.setOnAction(e -> sendMessage());
@@ -330,180 +401,452 @@ public class ChatClient extends Application {
         loadChatHistory();
     }
 
-    private void addMessageToUI(String time, String author, String content) {
-        boolean isMe = author.equals(currentUsername);
-        Label nameLabel = new Label(author + " • " + time);
-        nameLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: #888888;");
+    private void markChatRead(long chatId) {
+        // NOTIFY SERVER CHAT IS READ
+        http.send(
+                http.request("/api/chats/" + chatId + "/read/" + currentUserId)
+                        .POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString()
+        );
+
+        ChatEntry entry = findChatEntry(chatId);
+        if (entry != null && entry.hasUnread) {
+            chatEntries.set(chatEntries.indexOf(entry), new ChatEntry(entry.id, entry.name, entry.lastMsg, false, entry.lastTime));
+        }
+    }
 
-        Label msgLabel = new Label(content);
-        msgLabel.setWrapText(true);
-        msgLabel.setMaxWidth(250);
-        msgLabel.setPadding(new Insets(8, 12, 8, 12));
+    // Safe to call from any thread. id is -1 when the server didn't send one.
+    private void addMessageToUI(long id, String time, String author, String content) {
+        pendingLines.add(new ChatLine(id, time, author, content, author.equals(currentUsername)));
+    }
 
-        VBox bubbleContainer = new VBox(2, nameLabel, msgLabel);
-        HBox row = new HBox(bubbleContainer);
-        row.setPadding(new Insets(5));
+    // Runs on the FX thread, once per pulse: one list change and one scroll for however many messages arrived
+    private void flushPendingLines() {
+        if (pendingLines.isEmpty() || chatListView == null) return;
+        List<ChatLine> batch = new ArrayList<>();
+        ChatLine line;
+        while ((line = pendingLines.poll()) != null) {
+            if (line.id() > 0) {
+                if (line.id() <= lastShownId) continue; // Already loaded with the history
+                lastShownId = line.id();
+            }
+            batch.add(line);
+        }
+        if (batch.isEmpty()) return;
+        chatListView.getItems().addAll(batch);
+        chatListView.scrollTo(chatListView.getItems().size() - 1);
+    }
 
-        if (isMe) {
-            row.setAlignment(Pos.CENTER_RIGHT);
-            bubbleContainer.setAlignment(Pos.TOP_RIGHT);
-            msgLabel.setStyle("-fx-background-color: #0078FF; -fx-text-fill: white; -fx-background-radius: 15 15 2 15;");
-        } else {
-            row.setAlignment(Pos.CENTER_LEFT);
-            bubbleContainer.setAlignment(Pos.TOP_LEFT);
-            msgLabel.setStyle("-fx-background-color: #E9E9EB; -fx-text-fill: black; -fx-background-radius: 15 15 15 2;");
+    // Runs on the FX thread. Appends lines fetched from the server; live messages shown
+    // while the request was in flight are put back after them, in id order, without duplicates.
+    private void appendHistory(List<ChatLine> fetched) {
+        if (fetched.isEmpty()) return;
+        List<ChatLine> items = chatListView.getItems();
+        long fetchedFrom = fetched.get(0).id();
+        long fetchedTo = fetched.get(fetched.size() - 1).id();
+
+        int tailStart = items.size();
+        while (tailStart > 0 && items.get(tailStart - 1).id() >= fetchedFrom) tailStart--;
+        List<ChatLine> newer = new ArrayList<>(fetched);
+        for (ChatLine live : items.subList(tailStart, items.size())) {
+            if (live.id() > fetchedTo) newer.add(live);
         }
+        items.remove(tailStart, items.size());
+        items.addAll(newer);
 
-        Platform.runLater(() -> {
-            chatListView.getItems().add(row);
-            chatListView.scrollTo(row);
-        });
+        lastShownId = Math.max(lastShownId, newer.get(newer.size() - 1).id());
+        chatListView.scrollTo(items.size() - 1);
     }
 
     // --- DATA FETCHING ---
+
+    private void openStore(String username) {
+        store = new LocalStore(username);
+        // Show the chat list from the last session while the fresh one loads
+        LocalStore opened = store;
+        opened.loadChats().thenAccept(chats -> Platform.runLater(() -> {
+            if (store != opened || !chatListStale || !chatEntries.isEmpty()) return;
+            List<ChatEntry> cached = new ArrayList<>(chats.size());
+            for (ClientJson.ChatSummary chat : chats) {
+                cached.add(new ChatEntry(chat.id(), chat.name(), chat.lastMessage(), chat.hasUnread(), chat.lastMessageTime()));
+            }
+            cached.sort(NEWEST_FIRST);
+            chatEntries.setAll(cached);
+        }));
+    }
+
+    // Shows the cached messages right away, then asks the server only for the ones after them
     private void loadChatHistory() {
         final long loadingChatId = this.currentChatId;
-        HttpClient.newHttpClient().sendAsync(
-                HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/api/messages/" + loadingChatId)).GET().build(),
-                HttpResponse.BodyHandlers.ofString()
+        if (store == null) {
+            loadLatestPage(loadingChatId);
+            return;
+        }
+        store.loadMessages(loadingChatId).thenAccept(cached -> Platform.runLater(() -> {
+            if (chatListView == null || currentChatId != loadingChatId) return;
+            if (cached.isEmpty()) {
+                loadLatestPage(loadingChatId);
+                return;
+            }
+            List<ChatLine> lines = toLines(cached);
+            chatListView.getItems().setAll(lines);
+            lastShownId = lines.get(lines.size() - 1).id();
+            chatListView.scrollTo(lines.size() - 1);
+            catchUp(loadingChatId, lastShownId, MAX_CATCH_UP_PAGES);
+        }));
+    }
+
+    // Called on reconnect: only what was missed while the socket was down
+    private void resyncChatHistory() {
+        if (lastShownId > 0 && store != null) {
+            catchUp(currentChatId, lastShownId, MAX_CATCH_UP_PAGES);
+        } else {
+            loadChatHistory();
+        }
+    }
+
+    private void catchUp(long chatId, long afterId, int pagesLeft) {
+        http.send(
+                http.conditionalRequest("/api/messages/" + chatId + "/page?after=" + afterId + "&limit=" + CATCH_UP_PAGE_SIZE).GET().build(),
+                HttpResponse.BodyHandlers.ofInputStream()
+        ).thenAccept(response -> {
+            // 304: asked the same before and the chat has not changed since, it is all in the store
+            if (response.statusCode() != 200) return;
+            ClientJson.HistoryPage page = ClientJson.readHistoryPage(response.body());
+            if (page == null) {
+                log.warn("Malformed history page of chat {}", chatId);
+                return;
+            }
+            if (page.nextCursor() != null && pagesLeft <= 1) {
+                // Too far behind to be worth replaying, start over from the latest page
+                Platform.runLater(() -> {
+                    if (currentChatId == chatId) loadLatestPage(chatId);
+                });
+                return;
+            }
+            LocalStore target = store;
+            if (target != null) target.appendMessages(chatId, page.messages());
+            List<ChatLine> lines = toLines(page.messages());
+            Platform.runLater(() -> {
+                if (chatListView == null || currentChatId != chatId) return;
+                appendHistory(lines);
+            });
+            if (page.nextCursor() != null) catchUp(chatId, page.nextCursor(), pagesLeft - 1);
+        }).exceptionally(this::logError);
+    }
+
+    private void loadLatestPage(long chatId) {
+        http.send(
+                http.request("/api/messages/" + chatId + "/page?limit=" + HISTORY_PAGE_SIZE).GET().build(),
+                HttpResponse.BodyHandlers.ofInputStream()
         ).thenAccept(response -> {
             if (response.statusCode() == 200) {
-                String body = response.body();
+                // Decoded here, on the HTTP client's thread, the FX thread only gets the records
+                ClientJson.HistoryPage page = ClientJson.readHistoryPage(response.body());
+                if (page == null) {
+                    log.warn("Malformed history page of chat {}", chatId);
+                    return;
+                }
+                LocalStore target = store;
+                if (target != null) target.replaceMessages(chatId, page.messages());
+                List<ChatLine> lines = toLines(page.messages());
                 Platform.runLater(() -> {
-                    if (chatListView == null || currentChatId != loadingChatId) return;
+                    if (chatListView == null || currentChatId != chatId) return;
                     chatListView.getItems().clear();
-                    if (body.equals("[]") || body.isEmpty()) return;
-
-                    String content = body.trim();
-                    content = content.substring(1, content.length() - 1);
-                    String[] messages = content.split("(?<=\\}),(?=\\{)");
-                    for (String msg : messages) {
-                        addMessageToUI(extractValueFromJSON(msg, "time"), extractValueFromJSON(msg, "author"), extractValueFromJSON(msg, "content"));
-                    }
+                    lastShownId = 0;
+                    appendHistory(lines);
                 });
             }
-        });
+        }).exceptionally(this::logError);
     }
 
-    private void fetchUserChats(ListView<ChatEntry> listView) {
-        HttpClient.newHttpClient().sendAsync(
-                HttpRequest.newBuilder()
-                        .uri(URI.create("http://localhost:8080/api/chats/user/" + currentUserId))
+    private List<ChatLine> toLines(List<ClientJson.HistoryMessage> messages) {
+        List<ChatLine> lines = new ArrayList<>(messages.size());
+        for (ClientJson.HistoryMessage msg : messages) {
+            lines.add(new ChatLine(msg.id(), msg.time(), msg.author(), msg.content(), msg.author().equals(currentUsername)));
+        }
+        return lines;
+    }
+
+    private void fetchUserChats() {
+        http.send(
+                http.conditionalRequest("/api/chats/user/" + currentUserId)
                         .GET()
                         .build(),
-                HttpResponse.BodyHandlers.ofString()
+                HttpResponse.BodyHandlers.ofInputStream()
         ).thenAccept(response -> {
-            if (response.statusCode() == 200) {
-                String body = response.body();
-                Platform.runLater(() -> {
-                    List<ChatEntry> chatEntries = new ArrayList<>();
-
-                    // Check if body is a valid JSON array and not empty
-                    if (body != null && body.length() > 2 && !body.equals("[]")) {
-                        try {
-                            // Remove outer brackets [ ]
-                            String content = body.substring(1, body.length() - 1);
-
-                            // Split exactly between objects: } , {
-                            String[] chats = content.split("(?<=\\}),(?=\\{)");
-
-                            for (String chatJson : chats) {
-                                String json = chatJson.trim();
-                                // Ensure the string is treated as a full JSON object for extractors
-                                if (!json.startsWith("{")) json = "{" + json;
-                                if (!json.endsWith("}")) json = json + "}";
-
-                                long id = extractIdFromJSON(json, "id");
-                                String name = extractValueFromJSON(json, "chatName");
-                                String lastMsg = extractValueFromJSON(json, "lastMessage");
-                                boolean unread = json.contains("\"hasUnread\":true");
-                                String lastTime = json.contains("\"lastMessageTime\":\"")
-                                        ? json.replaceAll(".*\"lastMessageTime\":\"([^\"]+)\".*", "$1")
-                                        : "";
-
-                                if (id != -1) {
-                                    chatEntries.add(new ChatEntry(id, name, lastMsg, unread, lastTime));
-                                }
-                            }
-                        } catch (Exception e) {
-                            System.err.println("Parsing error: " + e.getMessage());
-                        }
-                    }
+            if (response.statusCode() == 304) {
+                // Unchanged since the list on screen was fetched
+                Platform.runLater(() -> this.chatListStale = false);
+            } else if (response.statusCode() == 200) {
+                List<ClientJson.ChatSummary> chats = ClientJson.readChatList(response.body());
+                if (chats == null) {
+                    log.warn("Malformed chat list");
+                    return;
+                }
+                LocalStore target = store;
+                if (target != null) target.saveChats(chats);
+                List<ChatEntry> chatEntries = new ArrayList<>();
+                for (ClientJson.ChatSummary chat : chats) {
+                    chatEntries.add(new ChatEntry(chat.id(), chat.name(), chat.lastMessage(), chat.hasUnread(), chat.lastMessageTime()));
+                }
+                // SORTING: Newest first
+                chatEntries.sort(NEWEST_FIRST);
 
-                    // SORTING: Unread messages first
-                    chatEntries.sort((a, b) -> b.lastTime.compareTo(a.lastTime));
-                    listView.getItems().setAll(chatEntries);
+                Platform.runLater(() -> {
+                    this.chatEntries.setAll(chatEntries);
+                    this.chatListStale = false;
                 });
             }
-        });
+        }).exceptionally(this::logError);
+    }
+
+    private Void logError(Throwable error) {
+        log.warn("Request failed: {}", error.getMessage());
+        return null;
+    }
+
+    private void logLatency() {
+        if (log.isDebugEnabled()) log.debug("Request latency of this session:{}{}", System.lineSeparator(), http.latencyReport());
     }
 
     private void createNewConversation(String targetUsername, Stage windowToClose) {
-        String url = String.format("http://localhost:8080/api/chats/create-private?creatorId=%d&targetUsername=%s",
+        String url = String.format("/api/chats/create-private?creatorId=%d&targetUsername=%s",
                 currentUserId, targetUsername);
-        HttpClient.newHttpClient().sendAsync(
-                HttpRequest.newBuilder().uri(URI.create(url)).POST(HttpRequest.BodyPublishers.noBody()).build(),
-                HttpResponse.BodyHandlers.ofString()
+        http.send(
+                http.request(url).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofInputStream()
         ).thenAccept(response -> {
             if (response.statusCode() == 200) {
-                long chatId = extractIdFromJSON(response.body(), "id");
-                String chatName = extractValueFromJSON(response.body(), "chatName");
-                Platform.runLater(() -> {
-                    windowToClose.close();
-                    showChatScreen(chatId, chatName);
-                });
+                openCreatedChat(ClientJson.readCreatedChat(response.body()), windowToClose);
             } else {
                 Platform.runLater(() -> new Alert(Alert.AlertType.ERROR, "User not found!").show());
             }
-        });
+        }).exceptionally(this::logError);
     }
 
     private void createGroupConversation(String groupName, List<String> members, Stage windowToClose) {
         // Convert list to JSON array string
         String usersJson = "[\"" + String.join("\",\"", members) + "\"]";
 
-        String url = String.format("http://localhost:8080/api/chats/create-group?creatorId=%d&groupName=%s",
+        String url = String.format("/api/chats/create-group?creatorId=%d&groupName=%s",
                 currentUserId, groupName.replace(" ", "%20"));
 
-        HttpClient.newHttpClient().sendAsync(
-                HttpRequest.newBuilder()
-                        .uri(URI.create(url))
+        http.send(
+                http.request(url)
                         .header("Content-Type", "application/json")
                         .POST(HttpRequest.BodyPublishers.ofString(usersJson))
                         .build(),
-                HttpResponse.BodyHandlers.ofString()
+                HttpResponse.BodyHandlers.ofInputStream()
         ).thenAccept(response -> {
             if (response.statusCode() == 200) {
-                long chatId = extractIdFromJSON(response.body(), "id");
-                String chatName = extractValueFromJSON(response.body(), "chatName");
-                Platform.runLater(() -> {
-                    windowToClose.close();
-                    showChatScreen(chatId, chatName);
-                });
+                openCreatedChat(ClientJson.readCreatedChat(response.body()), windowToClose);
             }
+        }).exceptionally(this::logError);
+    }
+
+    // The dialog stays open when the answer can't be read, so the user can try again
+    private void openCreatedChat(ClientJson.CreatedChat chat, Stage windowToClose) {
+        if (chat == null || chat.id() == -1) {
+            log.warn("Malformed answer to creating a chat");
+            Platform.runLater(() -> new Alert(Alert.AlertType.ERROR, "Could not open the new chat.").show());
+            return;
+        }
+        Platform.runLater(() -> {
+            windowToClose.close();
+            showChatScreen(chat.id(), chat.chatName());
         });
     }
 
     // --- WEBSOCKET & UTILS ---
     private void connectWebSocket() {
         if (ws != null) return;
-        HttpClient.newHttpClient().newWebSocketBuilder()
-                .buildAsync(URI.create("ws://localhost:8080/chat"), new WebSocket.Listener() {
+        http.newWebSocketBuilder()
+                // Big frames come as deflated binary frames (the JDK client can't do permessage-deflate)
+                .buildAsync(URI.create(ChatHttp.WS_URL + "/chat?userId=" + currentUserId + "&compress=deflate"), new WebSocket.Listener() {
+                    private final StringBuilder partial = new StringBuilder();
+                    private final ByteArrayOutputStream partialBinary = new ByteArrayOutputStream();
+
                     @Override
                     public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
-                        Platform.runLater(() -> {
-                            String msg = data.toString();
-                            long msgChatId = extractIdFromJSON(msg, "chatId");
-                            if (isInChat && currentChatId == msgChatId) {
-                                addMessageToUI(extractValueFromJSON(msg, "time"), extractValueFromJSON(msg, "author"), extractValueFromJSON(msg, "content"));
-                            }
-//                            else {
-//                                showToastNotification("New message from " + extractValueFromJSON(msg, "author"));
-//                            }
-                        });
+                        partial.append(data);
+                        if (last) {
+                            onFrame(partial.toString());
+                            partial.setLength(0);
+                        }
                         return WebSocket.Listener.super.onText(webSocket, data, last);
                     }
-                }).thenAccept(webSocket -> this.ws = webSocket);
+
+                    @Override
+                    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+                        byte[] bytes = new byte[data.remaining()];
+                        data.get(bytes);
+                        partialBinary.writeBytes(bytes);
+                        if (last) {
+                            byte[] frame = partialBinary.toByteArray();
+                            partialBinary.reset();
+                            try {
+                                onFrame(ChatHttp.inflate(frame));
+                            } catch (IllegalArgumentException e) {
+                                log.warn("Dropped a bad frame: {}", e.getMessage());
+                            }
+                        }
+                        return WebSocket.Listener.super.onBinary(webSocket, data, last);
+                    }
+
+                    private void onFrame(String json) {
+                        ClientJson.ServerEvent event = ClientJson.readEvent(json);
+                        if (event != null) Platform.runLater(() -> handleServerEvent(event));
+                    }
+
+                    @Override
+                    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+                        Platform.runLater(() -> onWebSocketLost(webSocket));
+                        return null;
+                    }
+
+                    @Override
+                    public void onError(WebSocket webSocket, Throwable error) {
+                        Platform.runLater(() -> onWebSocketLost(webSocket));
+                    }
+                }).thenAccept(webSocket -> Platform.runLater(() -> {
+                    this.ws = webSocket;
+                    lastSend = CompletableFuture.completedFuture(null);
+                    // Chats we have a seq for are replayed over the socket, the rest come from the REST views
+                    boolean openChatResumed = isInChat && lastSeqs.containsKey(currentChatId);
+                    sendResume(webSocket);
+                    if (chatListStale) fetchUserChats();
+                    if (isInChat && !openChatResumed) resyncChatHistory();
+                })).exceptionally(error -> {
+                    Platform.runLater(this::scheduleReconnect);
+                    return null;
+                });
+    }
+
+    // Asks the server for every message after the last seq we have per chat
+    private void sendResume(WebSocket webSocket) {
+        if (lastSeqs.isEmpty()) return;
+        StringBuilder chats = new StringBuilder();
+        for (Map.Entry<Long, Long> e : lastSeqs.entrySet()) {
+            if (!chats.isEmpty()) chats.append(',');
+            chats.append('"').append(e.getKey()).append("\":").append(e.getValue());
+        }
+        resumeBuffer = new ArrayList<>();
+        sendFrame(webSocket, String.format("{\"type\": \"resume\", \"userId\": %d, \"chats\": {%s}}",
+                currentUserId, chats)).exceptionally(this::logError);
+    }
+
+    // Queues the frame behind the previous send; the returned future fails if this frame could not be sent
+    private CompletableFuture<Void> sendFrame(WebSocket webSocket, String frame) {
+        CompletableFuture<Void> sent = lastSend.thenCompose(ignored -> webSocket.sendText(frame, true)).thenAccept(ignored -> {});
+        lastSend = sent.exceptionally(error -> null); // The next frame still goes out
+        return sent;
+    }
+
+    // Live frames may have arrived before the replayed ones; applied together in seq order, duplicates skipped
+    private void finishResume() {
+        List<ClientJson.ServerEvent> held = resumeBuffer;
+        resumeBuffer = null;
+        if (held == null) return;
+        held.sort(Comparator.comparingLong(ClientJson.ServerEvent::chatId).thenComparingLong(ClientJson.ServerEvent::seq));
+        for (ClientJson.ServerEvent event : held) {
+            applyMessageEvent(event);
+        }
+    }
+
+    private void onWebSocketLost(WebSocket lost) {
+        if (ws != null && ws != lost) return; // An older socket, already replaced
+        finishResume();
+        ws = null;
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        if (currentUsername == null) return; // Logged out
+        chatListStale = true;
+        PauseTransition delay = new PauseTransition(javafx.util.Duration.seconds(2));
+        delay.setOnFinished(e -> {
+            if (currentUsername != null) connectWebSocket();
+        });
+        delay.play();
+    }
+
+    // Runs on the FX thread
+    private void handleServerEvent(ClientJson.ServerEvent event) {
+        if (event.type() == null) return;
+        switch (event.type()) {
+            case "message" -> {
+                if (resumeBuffer != null) resumeBuffer.add(event);
+                else applyMessageEvent(event);
+            }
+            case "resumed" -> finishResume();
+            case "resync" -> {
+                // Too far behind for a replay
+                lastSeqs.remove(event.chatId());
+                if (isInChat && currentChatId == event.chatId()) resyncChatHistory();
+            }
+            case "chat-created" -> {
+                if (findChatEntry(event.chatId()) == null) {
+                    chatEntries.add(new ChatEntry(event.chatId(), event.chatName(),
+                            "No messages yet", false, "1970-01-01T00:00:00"));
+                    FXCollections.sort(chatEntries, NEWEST_FIRST);
+                }
+            }
+            case "presence" -> {
+                if (event.snapshot()) onlineUsers.clear();
+                onlineUsers.addAll(event.online());
+                event.offline().forEach(onlineUsers::remove);
+                if (dashboardList != null) dashboardList.refresh();
+                updateChatStatus();
+            }
+            case "typing" -> {
+                List<String> others = event.users().stream().filter(u -> !u.equals(currentUsername)).toList();
+                if (others.isEmpty()) typingByChat.remove(event.chatId());
+                else typingByChat.put(event.chatId(), others);
+                updateChatStatus();
+            }
+            case "chat-deleted" -> {
+                chatEntries.removeIf(e -> e.id == event.chatId());
+                lastSeqs.remove(event.chatId());
+                if (store != null) store.deleteChat(event.chatId());
+                if (isInChat && currentChatId == event.chatId()) showDashboard();
+            }
+            default -> { } // Errors and event types this client doesn't know
+        }
+    }
+
+    private void applyMessageEvent(ClientJson.ServerEvent event) {
+        long msgChatId = event.chatId();
+        if (event.seq() > 0) {
+            Long last = lastSeqs.get(msgChatId);
+            if (last != null && event.seq() <= last) return; // Both replayed and received live
+            lastSeqs.put(msgChatId, event.seq());
+        }
+        boolean viewing = isInChat && currentChatId == msgChatId;
+        if (viewing) {
+            addMessageToUI(event.id(), event.time(), event.author(), event.content());
+        }
+
+        ChatEntry entry = findChatEntry(msgChatId);
+        if (entry == null) {
+            // A chat we haven't heard of, get the full list
+            chatListStale = true;
+            if (!isInChat) fetchUserChats();
+            return;
+        }
+
+        boolean mine = event.authorId() == currentUserId;
+        String preview = (mine ? "You: " : event.author() + ": ") + event.content();
+        chatEntries.set(chatEntries.indexOf(entry),
+                new ChatEntry(entry.id, entry.name, preview, !mine && !viewing, event.sentAt()));
+        FXCollections.sort(chatEntries, NEWEST_FIRST);
+    }
+
+    private ChatEntry findChatEntry(long chatId) {
+        for (ChatEntry entry : chatEntries) {
+            if (entry.id == chatId) return entry;
+        }
+        return null;
     }
 
     private void sendMessage() {
@@ -511,32 +854,44 @@ public class ChatClient extends Application {
         if (ws != null && !text.isEmpty()) {
             String jsonMsg = String.format("{\"authorId\": %d, \"chatId\": %d, \"content\": \"%s\"}",
                     currentUserId, currentChatId, text.replace("\"", "\\\""));
-            ws.sendText(jsonMsg, true);
+            sendFrame(ws, jsonMsg).exceptionally(error -> {
+                // Give the text back so it can be sent again once the connection is back
+                Platform.runLater(() -> {
+                    if (input.getText().isEmpty()) input.setText(text);
+                });
+                return logError(error);
+            });
+            typingSentAt = 0; // The server ends our typing when the message arrives
             input.clear();
         }
     }
 
-    private long extractIdFromJSON(String json, String key) {
-        try {
-            String pattern = "\"" + key + "\":";
-            int start = json.indexOf(pattern) + pattern.length();
-            int endComma = json.indexOf(",", start);
-            int endBrace = json.indexOf("}", start);
-            int end = (endComma != -1 && (endBrace == -1 || endComma < endBrace)) ? endComma : endBrace;
-            return Long.parseLong(json.substring(start, end).trim());
-        } catch (Exception e) { return -1; }
-    }
-
-    private String extractValueFromJSON(String json, String key) {
-        try {
-            String pattern = "\"" + key + "\":\"";
-            int start = json.indexOf(pattern) + pattern.length();
-            return json.substring(start, json.indexOf("\"", start));
-        } catch (Exception e) { return "Unknown"; }
+    // Runs on the FX thread, on every edit of the message field
+    private void typingChanged(String text) {
+        if (ws == null || !isInChat) return;
+        long now = System.currentTimeMillis();
+        if (text.isBlank()) {
+            if (typingSentAt == 0) return;
+            typingSentAt = 0;
+            sendFrame(ws, String.format("{\"type\": \"typing\", \"chatId\": %d, \"typing\": false}", currentChatId))
+                    .exceptionally(this::logError);
+        } else if (now - typingSentAt >= TYPING_EVERY_MS) {
+            typingSentAt = now;
+            sendFrame(ws, String.format("{\"type\": \"typing\", \"chatId\": %d}", currentChatId))
+                    .exceptionally(this::logError);
+        }
     }
 
-    private long extractIdFromText(String text) {
-        return Long.parseLong(text.substring(text.lastIndexOf(":") + 1).replace(")", "").trim());
+    private void updateChatStatus() {
+        if (chatStatusLabel == null || !isInChat) return;
+        List<String> typing = typingByChat.getOrDefault(currentChatId, List.of());
+        if (typing.size() == 1) {
+            chatStatusLabel.setText(typing.get(0) + " is typing...");
+        } else if (!typing.isEmpty()) {
+            chatStatusLabel.setText(String.join(", ", typing) + " are typing...");
+        } else {
+            chatStatusLabel.setText(onlineUsers.contains(currentChatName) ? "online" : "");
+        }
     }
 
     private void showToastNotification(String message) {
@@ -618,8 +973,57 @@ public class ChatClient extends Application {
         searchStage.show();
     }
 
+    @Override
+    public void stop() {
+        logLatency();
+        http.close();
+        if (store != null) store.close();
+    }
+
     public static void main(String[] args) { launch(args); }
 
+    // One message in the chat view
+    private record ChatLine(long id, String time, String author, String content, boolean mine) {}
+
+    // Builds the bubble nodes once per cell and only swaps text and style when the cell is reused
+    private static class MessageCell extends ListCell<ChatLine> {
+        private final Label nameLabel = new Label();
+        private final Label msgLabel = new Label();
+        private final VBox bubbleContainer = new VBox(2, nameLabel, msgLabel);
+        private final HBox row = new HBox(bubbleContainer);
+
+        MessageCell() {
+            nameLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: #888888;");
+            msgLabel.setWrapText(true);
+            msgLabel.setMaxWidth(250);
+            msgLabel.setPadding(new Insets(8, 12, 8, 12));
+            row.setPadding(new Insets(5));
+            setStyle("-fx-background-color: transparent;");
+        }
+
+        @Override
+        protected void updateItem(ChatLine item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setGraphic(null);
+                return;
+            }
+
+            nameLabel.setText(item.author() + " • " + item.time());
+            msgLabel.setText(item.content());
+            if (item.mine()) {
+                row.setAlignment(Pos.CENTER_RIGHT);
+                bubbleContainer.setAlignment(Pos.TOP_RIGHT);
+                msgLabel.setStyle("-fx-background-color: #0078FF; -fx-text-fill: white; -fx-background-radius: 15 15 2 15;");
+            } else {
+                row.setAlignment(Pos.CENTER_LEFT);
+                bubbleContainer.setAlignment(Pos.TOP_LEFT);
+                msgLabel.setStyle("-fx-background-color: #E9E9EB; -fx-text-fill: black; -fx-background-radius: 15 15 15 2;");
+            }
+            setGraphic(row);
+        }
+    }
+
     private static class ChatEntry {
         long id;
         String name;
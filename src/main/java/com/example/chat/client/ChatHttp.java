@@ -0,0 +1,253 @@
+package com.example.chat.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * The one HTTP client of a login session.
+ * Reuses connections (HTTP/2 when the server allows it, keep-alive otherwise), runs callbacks
+ * on a small bounded pool, puts a timeout on every request and keeps latency stats per endpoint.
+ * Asks for gzip and inflates it before the body handler sees it (the JDK client doesn't on its own).
+ * Remembers the ETag of every response that has one, {@link #conditionalRequest} sends it back as If-None-Match.
+ */
+final class ChatHttp implements AutoCloseable {
+
+    static final String BASE_URL = "http://localhost:8080";
+    static final String WS_URL = "ws://localhost:8080";
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(15);
+    private static final int THREADS = 4;
+    // More distinct URLs than this (catch-up cursors pile up) and the remembered ETags start over
+    private static final int MAX_ETAGS = 256;
+
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    // Key: request URI, Value: ETag of the last 200 response to it
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+    ChatHttp() {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "chat-http-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .executor(executor)
+                .build();
+    }
+
+    // Request builder for a server path such as "/api/chats/5", with the default timeout
+    HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(BASE_URL + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept-Encoding", "gzip");
+    }
+
+    // Like request(), but the server may answer 304 (empty body) when nothing changed since the last 200.
+    // Only for callers that still show what that 200 returned.
+    HttpRequest.Builder conditionalRequest(String path) {
+        HttpRequest.Builder builder = request(path);
+        String etag = etags.get(BASE_URL + path);
+        if (etag != null) builder.header("If-None-Match", etag);
+        return builder;
+    }
+
+    <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        String endpoint = endpointOf(request);
+        long start = System.nanoTime();
+        // Measured until the response headers arrive, streamed bodies are read afterwards
+        return client.sendAsync(request, gunzipping(handler))
+                .whenComplete((response, error) -> {
+                    stats.computeIfAbsent(endpoint, e -> new EndpointStats())
+                            .record(System.nanoTime() - start, error != null || response.statusCode() >= 500);
+                    if (error == null && response.statusCode() == 200) rememberEtag(request, response);
+                });
+    }
+
+    WebSocket.Builder newWebSocketBuilder() {
+        return client.newWebSocketBuilder().connectTimeout(CONNECT_TIMEOUT);
+    }
+
+    // Body of a deflated /chat frame (see connect with ?compress=deflate)
+    static String inflate(byte[] deflated) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(deflated);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(deflated.length * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break; // Truncated frame
+                out.write(chunk, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Bad compressed frame", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // One line per endpoint: calls, errors, average and max latency
+    String latencyReport() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, EndpointStats> entry : new TreeMap<>(stats).entrySet()) {
+            EndpointStats s = entry.getValue();
+            long calls = s.calls.sum();
+            sb.append(String.format("%-45s calls=%d errors=%d avg=%.1fms max=%.1fms%n",
+                    entry.getKey(), calls, s.errors.sum(),
+                    calls == 0 ? 0.0 : s.totalNanos.sum() / 1e6 / calls,
+                    s.maxNanos.get() / 1e6));
+        }
+        return sb.toString();
+    }
+
+    // Lets in-flight requests (and the WebSocket close handshake) finish without blocking the caller
+    @Override
+    public void close() {
+        client.shutdown();
+        executor.shutdown();
+    }
+
+    private void rememberEtag(HttpRequest request, HttpResponse<?> response) {
+        response.headers().firstValue("ETag").ifPresent(etag -> {
+            if (etags.size() >= MAX_ETAGS) etags.clear();
+            etags.put(request.uri().toString(), etag);
+        });
+    }
+
+    // "GET /api/messages/{id}/page": ids and query strings folded so stats group by endpoint
+    private static String endpointOf(HttpRequest request) {
+        String path = request.uri().getPath().replaceAll("/\\d+(?=/|$)", "/{id}");
+        return request.method() + " " + path;
+    }
+
+    // Hands gzip responses to the handler inflated, anything else untouched
+    private static <T> HttpResponse.BodyHandler<T> gunzipping(HttpResponse.BodyHandler<T> handler) {
+        return info -> {
+            HttpResponse.BodySubscriber<T> downstream = handler.apply(info);
+            boolean gzip = info.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+            return gzip ? new GunzipSubscriber<>(downstream) : downstream;
+        };
+    }
+
+    // Collects the compressed body (a fraction of the JSON it expands to), then passes it on inflated in one piece
+    private static final class GunzipSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        private byte[] body;
+        private boolean requested;
+        private boolean delivered;
+
+        private GunzipSubscriber(HttpResponse.BodySubscriber<T> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription upstream) {
+            downstream.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    if (n <= 0) return;
+                    synchronized (GunzipSubscriber.this) {
+                        requested = true;
+                    }
+                    deliver();
+                }
+
+                @Override
+                public void cancel() {
+                    upstream.cancel();
+                }
+            });
+            upstream.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                compressed.writeBytes(bytes);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            downstream.onError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            byte[] inflated;
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+                inflated = in.readAllBytes();
+            } catch (IOException e) {
+                downstream.onError(e);
+                return;
+            }
+            synchronized (this) {
+                body = inflated;
+            }
+            deliver();
+        }
+
+        // Once the body is inflated and the downstream asked for data
+        private void deliver() {
+            synchronized (this) {
+                if (body == null || !requested || delivered) return;
+                delivered = true;
+            }
+            downstream.onNext(List.of(ByteBuffer.wrap(body)));
+            downstream.onComplete();
+        }
+    }
+
+    private static final class EndpointStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos, boolean failed) {
+            calls.increment();
+            if (failed) errors.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.chat.client;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming decoder for the server's REST and WebSocket payloads.
+ * Reads tokens straight from the response stream into small records, without building
+ * intermediate strings or maps, so it can run on the HTTP client's threads instead of the FX thread.
+ */
+final class ClientJson {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ClientJson() {}
+
+    // One row of GET /api/chats/user/{userId}
+    record ChatSummary(long id, String name, String lastMessage, boolean hasUnread, String lastMessageTime) {}
+
+    // One row of GET /api/messages/{chatId}/page
+    record HistoryMessage(long id, String time, String author, String content) {}
+
+    record HistoryPage(List<HistoryMessage> messages, Long nextCursor) {}
+
+    // Response of /api/chats/create-private and /api/chats/create-group
+    record CreatedChat(long id, String chatName) {}
+
+    // Any frame received on /chat. Fields a given type doesn't use stay null / -1.
+    // users: typing frames; online, offline and snapshot: presence frames
+    record ServerEvent(String type, long id, long seq, long chatId, long authorId, String author, String content,
+                       String time, String sentAt, String chatName,
+                       List<String> users, List<String> online, List<String> offline, boolean snapshot) {}
+
+    // Like the other readers: null when the body is not valid JSON (cut off or garbled), for the caller to report
+    static List<ChatSummary> readChatList(InputStream in) {
+        List<ChatSummary> result = new ArrayList<>();
+        try (JsonParser p = MAPPER.createParser(in)) {
+            if (p.nextToken() != JsonToken.START_ARRAY) return result;
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                long id = -1;
+                String name = null, lastMessage = null, lastTime = "";
+                boolean unread = false;
+                for (JsonToken t = p.nextToken(); t != JsonToken.END_OBJECT && t != null; t = p.nextToken()) {
+                    if (skipStructure(p, t)) continue;
+                    switch (p.currentName()) {
+                        case "id" -> id = p.getValueAsLong(-1);
+                        case "chatName" -> name = p.getValueAsString();
+                        case "lastMessage" -> lastMessage = p.getValueAsString();
+                        case "hasUnread" -> unread = p.getValueAsBoolean();
+                        case "lastMessageTime" -> lastTime = p.getValueAsString("");
+                        default -> { }
+                    }
+                }
+                if (id != -1) result.add(new ChatSummary(id, name, lastMessage, unread, lastTime));
+            }
+        } catch (JacksonException e) {
+            return null;
+        }
+        return result;
+    }
+
+    static HistoryPage readHistoryPage(InputStream in) {
+        List<HistoryMessage> messages = new ArrayList<>();
+        Long nextCursor = null;
+        try (JsonParser p = MAPPER.createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return new HistoryPage(messages, null);
+            for (JsonToken t = p.nextToken(); t != JsonToken.END_OBJECT && t != null; t = p.nextToken()) {
+                if (t == JsonToken.START_ARRAY && "messages".equals(p.currentName())) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        messages.add(readHistoryMessage(p));
+                    }
+                } else if (skipStructure(p, t)) {
+                    continue;
+                } else if ("nextCursor".equals(p.currentName()) && t != JsonToken.VALUE_NULL) {
+                    nextCursor = p.getValueAsLong();
+                }
+            }
+        } catch (JacksonException e) {
+            return null;
+        }
+        return new HistoryPage(messages, nextCursor);
+    }
+
+    static CreatedChat readCreatedChat(InputStream in) {
+        long id = -1;
+        String chatName = null;
+        try (JsonParser p = MAPPER.createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return new CreatedChat(id, null);
+            for (JsonToken t = p.nextToken(); t != JsonToken.END_OBJECT && t != null; t = p.nextToken()) {
+                if (skipStructure(p, t)) continue;
+                switch (p.currentName()) {
+                    case "id" -> id = p.getValueAsLong(-1);
+                    case "chatName" -> chatName = p.getValueAsString();
+                    default -> { }
+                }
+            }
+        } catch (JacksonException e) {
+            return null;
+        }
+        return new CreatedChat(id, chatName);
+    }
+
+    // Null when the frame is not a JSON object, so one bad frame doesn't take the listener down
+    static ServerEvent readEvent(String frame) {
+        String type = null, author = null, content = null, time = null, sentAt = null, chatName = null;
+        long id = -1, seq = -1, chatId = -1, authorId = -1;
+        List<String> users = List.of(), online = List.of(), offline = List.of();
+        boolean snapshot = false;
+        try (JsonParser p = MAPPER.createParser(frame)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return null;
+            for (JsonToken t = p.nextToken(); t != JsonToken.END_OBJECT && t != null; t = p.nextToken()) {
+                if (t == JsonToken.START_ARRAY) {
+                    switch (p.currentName()) {
+                        case "users" -> users = readStrings(p);
+                        case "online" -> online = readStrings(p);
+                        case "offline" -> offline = readStrings(p);
+                        default -> p.skipChildren();
+                    }
+                    continue;
+                }
+                if (skipStructure(p, t)) continue;
+                switch (p.currentName()) {
+                    case "type" -> type = p.getValueAsString();
+                    case "id" -> id = p.getValueAsLong(-1);
+                    case "seq" -> seq = p.getValueAsLong(-1);
+                    case "chatId" -> chatId = p.getValueAsLong(-1);
+                    case "authorId" -> authorId = p.getValueAsLong(-1);
+                    case "author" -> author = p.getValueAsString();
+                    case "content" -> content = p.getValueAsString();
+                    case "time" -> time = p.getValueAsString();
+                    case "sentAt" -> sentAt = p.getValueAsString();
+                    case "chatName" -> chatName = p.getValueAsString();
+                    case "snapshot" -> snapshot = p.getValueAsBoolean();
+                    default -> { }
+                }
+            }
+        } catch (JacksonException e) {
+            return null;
+        }
+        return new ServerEvent(type, id, seq, chatId, authorId, author, content, time, sentAt, chatName,
+                users, online, offline, snapshot);
+    }
+
+    // Parser positioned on the START_ARRAY of a string list
+    private static List<String> readStrings(JsonParser p) {
+        List<String> result = new ArrayList<>();
+        for (JsonToken t = p.nextToken(); t != JsonToken.END_ARRAY && t != null; t = p.nextToken()) {
+            if (t.isScalarValue()) result.add(p.getValueAsString());
+            else p.skipChildren();
+        }
+        return result;
+    }
+
+    // Parser positioned on the START_OBJECT of one message
+    private static HistoryMessage readHistoryMessage(JsonParser p) {
+        long id = -1;
+        String time = null, author = null, content = null;
+        for (JsonToken t = p.nextToken(); t != JsonToken.END_OBJECT && t != null; t = p.nextToken()) {
+            if (skipStructure(p, t)) continue;
+            switch (p.currentName()) {
+                case "id" -> id = p.getValueAsLong(-1);
+                case "time" -> time = p.getValueAsString();
+                case "author" -> author = p.getValueAsString();
+                case "content" -> content = p.getValueAsString();
+                default -> { }
+            }
+        }
+        return new HistoryMessage(id, time, author, content);
+    }
+
+    // Skips property names and nested objects/arrays we don't read. Returns false on a scalar value.
+    private static boolean skipStructure(JsonParser p, JsonToken t) {
+        if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return true;
+        }
+        return !t.isScalarValue();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.chat.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * On-disk cache of one user's chats and messages (~/.chat-client/<username>/).
+ * The chat list is a small snapshot file; every chat's messages are an append-only file,
+ * one tab-separated line per message, in id order.
+ * All file access happens on one background thread.
+ */
+final class LocalStore implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalStore.class);
+    private static final String CHATS_FILE = "chats.tsv";
+
+    private final Path dir;
+    private final ExecutorService io;
+    // Highest message id on disk per chat, once the chat's file has been read
+    private final Map<Long, Long> lastIds = new ConcurrentHashMap<>();
+
+    LocalStore(String username) {
+        this(Path.of(System.getProperty("user.home"), ".chat-client", username.replaceAll("[^A-Za-z0-9._-]", "_")));
+    }
+
+    LocalStore(Path dir) {
+        this.dir = dir;
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "local-store");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    CompletableFuture<List<ClientJson.ChatSummary>> loadChats() {
+        return CompletableFuture.supplyAsync(() -> {
+            return readLines(dir.resolve(CHATS_FILE), 5,
+                    f -> new ClientJson.ChatSummary(Long.parseLong(f[0]), f[1], f[2], Boolean.parseBoolean(f[3]), f[4]));
+        }, io);
+    }
+
+    void saveChats(List<ClientJson.ChatSummary> chats) {
+        io.execute(() -> {
+            StringBuilder sb = new StringBuilder();
+            for (ClientJson.ChatSummary c : chats) {
+                sb.append(line(String.valueOf(c.id()), c.name(), c.lastMessage(), String.valueOf(c.hasUnread()), c.lastMessageTime()));
+            }
+            try {
+                Files.createDirectories(dir);
+                // Write-then-rename, so a crash never leaves half a snapshot behind
+                Path tmp = dir.resolve(CHATS_FILE + ".tmp");
+                Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+                Files.move(tmp, dir.resolve(CHATS_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("Could not save chat list: {}", e.getMessage());
+            }
+        });
+    }
+
+    CompletableFuture<List<ClientJson.HistoryMessage>> loadMessages(long chatId) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<ClientJson.HistoryMessage> messages = readLines(chatFile(chatId), 4,
+                    f -> new ClientJson.HistoryMessage(Long.parseLong(f[0]), f[1], f[2], f[3]));
+            lastIds.put(chatId, messages.isEmpty() ? 0L : messages.get(messages.size() - 1).id());
+            return messages;
+        }, io);
+    }
+
+    // Appends messages newer than what is on disk; older or unknown ids (-1) are skipped
+    void appendMessages(long chatId, List<ClientJson.HistoryMessage> messages) {
+        if (messages.isEmpty()) return;
+        io.execute(() -> {
+            long lastId = lastIds.getOrDefault(chatId, 0L);
+            try {
+                Files.createDirectories(dir);
+                try (BufferedWriter out = Files.newBufferedWriter(chatFile(chatId), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (ClientJson.HistoryMessage m : messages) {
+                        if (m.id() <= lastId) continue;
+                        out.write(line(String.valueOf(m.id()), m.time(), m.author(), m.content()));
+                        lastId = m.id();
+                    }
+                }
+                lastIds.put(chatId, lastId);
+            } catch (IOException e) {
+                log.warn("Could not cache messages of chat {}: {}", chatId, e.getMessage());
+            }
+        });
+    }
+
+    // Replaces the chat's file, used when the cached copy is too far behind to catch up
+    void replaceMessages(long chatId, List<ClientJson.HistoryMessage> messages) {
+        io.execute(() -> {
+            try {
+                Files.deleteIfExists(chatFile(chatId));
+            } catch (IOException e) {
+                log.warn("Could not reset cache of chat {}: {}", chatId, e.getMessage());
+            }
+            lastIds.put(chatId, 0L);
+        });
+        appendMessages(chatId, messages);
+    }
+
+    void deleteChat(long chatId) {
+        io.execute(() -> {
+            lastIds.remove(chatId);
+            try {
+                Files.deleteIfExists(chatFile(chatId));
+            } catch (IOException e) {
+                log.warn("Could not delete cache of chat {}: {}", chatId, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        io.shutdown(); // Queued writes still run
+    }
+
+    private Path chatFile(long chatId) {
+        return dir.resolve("chat-" + chatId + ".log");
+    }
+
+    // Lines with the wrong number of fields or a bad number (e.g. torn by a crash mid-write) are skipped
+    private static <T> List<T> readLines(Path file, int fields, Function<String[], T> parse) {
+        List<T> result = new ArrayList<>();
+        if (!Files.exists(file)) return result;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String raw;
+            while ((raw = in.readLine()) != null) {
+                String[] parts = raw.split("\t", -1);
+                if (parts.length != fields) continue;
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = unescape(parts[i]);
+                }
+                try {
+                    result.add(parse.apply(parts));
+                } catch (NumberFormatException e) {
+                    log.debug("Skipped a bad line in {}", file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read {}: {}", file, e.getMessage());
+        }
+        return result;
+    }
+
+    private static String line(String... fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) sb.append('\t');
+            sb.append(escape(fields[i]));
+        }
+        return sb.append('\n').toString();
+    }
+
+    private static String escape(String value) {
+        if (value == null) return "";
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                sb.append(switch (next) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> next;
+                });
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,93 +1,198 @@
 package com.example.chat.config;
 
 import com.example.chat.model.*;
-import com.example.chat.repository.*;
+import com.example.chat.service.ChatEvents;
+import com.example.chat.service.ChatMetrics;
+import com.example.chat.service.ChatRoutingIndex;
+import com.example.chat.service.EntityCache;
+import com.example.chat.service.FrameCompression;
+import com.example.chat.service.MessageWriter;
+import com.example.chat.service.PresenceService;
+import com.example.chat.service.SessionOutbox;
+import com.example.chat.store.MessageStore;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 import tools.jackson.databind.ObjectMapper;
 
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 @Component
 public class ChatWebSocketHandler extends TextWebSocketHandler {
 
-    private final MessageRepository messageRepository;
-    private final UserRepository userRepository;
-    private final ChatRepository chatRepository;
-    private final ChatMemberRepository chatMemberRepository; // New injection
+    // Longer gaps are cheaper to fill with one history page than message by message
+    private static final int MAX_REPLAY = 500;
+
+    private final MessageWriter messageWriter;
+    private final EntityCache entityCache;
+    private final ChatRoutingIndex routingIndex;
+    private final SessionOutbox sessionOutbox;
+    private final ChatMetrics metrics;
+    private final ChatEvents chatEvents;
+    private final MessageStore messageStore;
+    private final FrameCompression compression;
+    private final PresenceService presence;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    // Key: WebSocketSession, Value: User ID (to know who is who)
-    private final Map<WebSocketSession, Long> sessionUserMap = new ConcurrentHashMap<>();
-
-    public ChatWebSocketHandler(MessageRepository messageRepository,
-                                UserRepository userRepository,
-                                ChatRepository chatRepository,
-                                ChatMemberRepository chatMemberRepository) {
-        this.messageRepository = messageRepository;
-        this.userRepository = userRepository;
-        this.chatRepository = chatRepository;
-        this.chatMemberRepository = chatMemberRepository;
+    public ChatWebSocketHandler(MessageWriter messageWriter,
+                                EntityCache entityCache,
+                                ChatRoutingIndex routingIndex,
+                                SessionOutbox sessionOutbox,
+                                ChatMetrics metrics,
+                                ChatEvents chatEvents,
+                                MessageStore messageStore,
+                                FrameCompression compression,
+                                PresenceService presence) {
+        this.messageWriter = messageWriter;
+        this.entityCache = entityCache;
+        this.routingIndex = routingIndex;
+        this.sessionOutbox = sessionOutbox;
+        this.metrics = metrics;
+        this.chatEvents = chatEvents;
+        this.messageStore = messageStore;
+        this.compression = compression;
+        this.presence = presence;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // Clients can identify themselves on connect (ws://host/chat?userId=5),
+        // so they receive messages before they send their first one
+        Long userId = userIdFromUri(session.getUri());
+        if (userId != null) {
+            bind(session, userId);
+        }
+        // ...and ask for big frames to come deflated (?compress=deflate)
+        compression.negotiate(session);
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         // 1. Parse incoming JSON from client
+        long started = System.nanoTime();
         Map<String, Object> data = objectMapper.readValue(message.getPayload(), Map.class);
+        if ("resume".equals(data.get("type"))) {
+            resume(session, data);
+            return;
+        }
+        if (PresenceService.TYPING.equals(data.get("type"))) {
+            typing(session, data);
+            return;
+        }
 
         // Track/Update the user ID for this session
         Long authorId = Long.valueOf(data.get("authorId").toString());
-        sessionUserMap.put(session, authorId); // Use put to update if user relogs
+        bind(session, authorId); // Re-binds the session if the user relogs
 
         Long chatId = Long.valueOf(data.get("chatId").toString());
         String content = (String) data.get("content");
+        presence.messageSent(authorId, chatId);
 
-        // 2. Fetch Entities from Database
-        User author = userRepository.findById(authorId)
+        // 2. Fetch Entities (cached, they hardly ever change)
+        User author = entityCache.findUser(authorId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        Chat chat = chatRepository.findById(chatId)
+        Chat chat = entityCache.findChat(chatId)
                 .orElseThrow(() -> new RuntimeException("Chat not found"));
 
-        // 3. Save Message to H2
+        // 3. Hand the message to the writer (saved right away or batched, see chat.persistence.*)
         Message newMessage = new Message(content, author, chat);
-        messageRepository.save(newMessage);
-
-        // 4. Create the JSON payload for the broadcast
-        // We send this so the client's 'onText' listener can parse chatId and author
-        String currentTime = java.time.LocalTime.now()
-                .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm"));
-
-        Map<String, Object> responseData = Map.of(
-                "chatId", chatId,
-                "author", author.getUsername(),
-                "content", content,
-                "time", currentTime // Add this
-        );
-        String jsonResponse = objectMapper.writeValueAsString(responseData);
-
-        // 5. Targeted Broadcast: Only send to members of THIS chat
-        List<Long> allowedUserIds = chatMemberRepository.findByChatId(chatId)
-                .stream()
-                .map(ChatMember::getUserId)
-                .toList();
-
-        for (Map.Entry<WebSocketSession, Long> entry : sessionUserMap.entrySet()) {
-            WebSocketSession s = entry.getKey();
-            Long userIdInSession = entry.getValue();
-
-            // Check if session is open AND if that specific user is a member of the chat
-            if (s.isOpen() && allowedUserIds.contains(userIdInSession)) {
-                s.sendMessage(new TextMessage(jsonResponse));
+        long handedOff = System.nanoTime();
+        metrics.recordParse(handedOff - started);
+
+        // 4. Targeted Broadcast: the chat's members get the message once it is committed, in seq order
+        // (ChatSequencer), or right when it is queued with chat.persistence.durability=after-enqueue
+        messageWriter.write(newMessage).whenComplete((ignored, error) -> {
+            metrics.recordPersist(System.nanoTime() - handedOff, error == null);
+            if (error != null) {
+                sendSaveError(session);
+            }
+        });
+    }
+
+    /**
+     * A reconnected client tells us the last seq it has seen per chat:
+     * {"type": "resume", "userId": 5, "chats": {"12": 340, "15": 7}}
+     * The session is already receiving live messages, so only the gap before them is replayed,
+     * as ordinary message frames. A chat whose gap is too long (or no longer in the hot store)
+     * gets {"type": "resync", "chatId": ...} instead, and the client reloads it over REST.
+     * A final {"type": "resumed"} marks the end of the replay.
+     */
+    private void resume(WebSocketSession session, Map<String, Object> data) {
+        Long userId = Long.valueOf(data.get("userId").toString());
+        bind(session, userId);
+
+        Object chats = data.get("chats");
+        if (chats instanceof Map<?, ?> lastSeen) {
+            for (Map.Entry<?, ?> entry : lastSeen.entrySet()) {
+                Long chatId = Long.valueOf(entry.getKey().toString());
+                long afterSeq = Long.parseLong(entry.getValue().toString());
+                if (!routingIndex.isMember(userId, chatId)) continue;
+
+                List<Message> missed = messageStore.pageAfterSeq(chatId, afterSeq, MAX_REPLAY + 1);
+                boolean gapLeft = missed.isEmpty()
+                        ? messageStore.lastSeq(chatId) > afterSeq
+                        : missed.size() > MAX_REPLAY || missed.get(0).getSeq() != afterSeq + 1
+                        // A hole inside the run (a seq rolled back, or still committing) would look like a missing message
+                        || missed.get(missed.size() - 1).getSeq() != afterSeq + missed.size();
+                if (gapLeft) {
+                    sessionOutbox.send(session, new TextMessage(objectMapper.writeValueAsString(Map.of(
+                            "type", "resync",
+                            "chatId", chatId
+                    ))));
+                    continue;
+                }
+                for (Message m : missed) {
+                    sessionOutbox.send(session, new TextMessage(chatEvents.messageJson(m)));
+                }
             }
         }
+        sessionOutbox.send(session, new TextMessage("{\"type\":\"resumed\"}"));
+    }
+
+    // {"type": "typing", "chatId": 12} while the user types, with "typing": false once they clear the input.
+    // Only from a bound session, for its own user.
+    private void typing(WebSocketSession session, Map<String, Object> data) {
+        Long userId = routingIndex.userOf(session);
+        if (userId == null || data.get("chatId") == null) return;
+        Long chatId = Long.valueOf(data.get("chatId").toString());
+        presence.typing(userId, chatId, !Boolean.FALSE.equals(data.get("typing")));
+    }
+
+    private void bind(WebSocketSession session, Long userId) {
+        if (routingIndex.register(session, userId)) {
+            presence.sessionOpened(session, userId);
+        }
+    }
+
+    private void sendSaveError(WebSocketSession session) {
+        String json = objectMapper.writeValueAsString(Map.of(
+                "type", "error",
+                "error", "Message could not be saved"
+        ));
+        sessionOutbox.send(session, new TextMessage(json));
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessionUserMap.remove(session);
+        presence.sessionClosing(session);
+        routingIndex.unregister(session);
+        sessionOutbox.remove(session);
+    }
+
+    private Long userIdFromUri(URI uri) {
+        if (uri == null || uri.getQuery() == null) return null;
+        for (String param : uri.getQuery().split("&")) {
+            String[] pair = param.split("=", 2);
+            if (pair.length == 2 && pair[0].equals("userId")) {
+                try {
+                    return Long.valueOf(pair[1]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
     }
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import com.example.chat.model.Chat;
 import com.example.chat.model.User;
 import com.example.chat.repository.ChatRepository;
 import com.example.chat.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
@@ -13,6 +15,8 @@ import java.util.Optional;
 @Component
 public class DataInitializer implements CommandLineRunner {
 
+    private static final Logger log = LoggerFactory.getLogger(DataInitializer.class);
+
     private final UserRepository userRepository;
     private final ChatRepository chatRepository;
 
@@ -35,10 +39,10 @@ public class DataInitializer implements CommandLineRunner {
             admin.setPassword("admin123"); // In a real app, you'd encode this
             admin.setEmail("admin@example.com");
             userRepository.save(admin);
-            System.out.println(">>> Created Test User: Admin (ID: " + admin.getId() + ")");
+            log.info("Created test user Admin (ID: {})", admin.getId());
         } else {
             admin = existingUser.get();
-            System.out.println(">>> Test User 'Admin' already exists.");
+            log.info("Test user Admin already exists");
         }
 
         // 2. Create a Default Chat Room if none exist
@@ -47,9 +51,9 @@ public class DataInitializer implements CommandLineRunner {
             globalChat.setChatName("Global Lounge");
             globalChat.setCreator(admin);
             chatRepository.save(globalChat);
-            System.out.println(">>> Created Global Chat Room (ID: " + globalChat.getId() + ")");
+            log.info("Created global chat room (ID: {})", globalChat.getId());
         } else {
-            System.out.println(">>> Chat rooms already exist in database.");
+            log.info("Chat rooms already exist in database");
         }
     }
 }
@@ -0,0 +1,69 @@
+package com.example.chat.config;
+
+import com.example.chat.model.Message;
+import com.example.chat.store.SegmentMessageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the id sequences past the highest id in use, before anything is inserted.
+ *
+ * Users, chats and messages used IDENTITY columns before they switched to pooled sequences,
+ * so on an existing database the new sequences start at 1, below rows that already exist.
+ * Hibernate's pooled optimizer hands out (value - allocationSize, value] for a sequence value,
+ * so restarting at max id + allocationSize continues right after the last id.
+ * Archived messages count too: their ids are gone from the table but still referenced.
+ * So do messages in the segment log when that engine is on, it hands out ids of its own.
+ *
+ * A sequence is only ever moved forward. One that is already past the max id stays where it is:
+ * after ChatPurger removed the newest rows, going back would hand their ids out again, and clients
+ * key cached files on them (LocalStore's chat-<id>.log).
+ */
+@Component
+public class IdSequenceAligner implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(IdSequenceAligner.class);
+
+    private final JdbcTemplate jdbc;
+    private final ObjectProvider<SegmentMessageStore> segmentStore;
+
+    public IdSequenceAligner(JdbcTemplate jdbc, ObjectProvider<SegmentMessageStore> segmentStore) {
+        this.jdbc = jdbc;
+        this.segmentStore = segmentStore;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        align("users_seq", max("SELECT MAX(id) FROM users"));
+        align("chats_seq", max("SELECT MAX(id) FROM chats"));
+        long maxMessageId = Math.max(max("SELECT MAX(id) FROM messages"),
+                max("SELECT MAX(last_message_id) FROM archive_segments"));
+        SegmentMessageStore segments = segmentStore.getIfAvailable();
+        if (segments != null) maxMessageId = Math.max(maxMessageId, segments.lastId());
+        align("messages_seq", maxMessageId);
+    }
+
+    private void align(String sequence, long maxId) {
+        long restart = maxId + Message.ID_ALLOCATION_SIZE;
+        long next = nextValue(sequence);
+        if (next >= restart) return;
+        jdbc.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + restart);
+        log.info("{} moved from {} to {}, past the highest id in use", sequence, next, restart);
+    }
+
+    // The value the sequence hands out next (H2 keeps it as BASE_VALUE), 0 if it doesn't exist yet
+    private long nextValue(String sequence) {
+        Long next = jdbc.query("SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = UPPER(?)",
+                rs -> rs.next() ? rs.getLong(1) : null, sequence);
+        return next == null ? 0 : next;
+    }
+
+    private long max(String query) {
+        Long max = jdbc.queryForObject(query, Long.class);
+        return max == null ? 0 : max;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.chat.config;
+
+import com.example.chat.service.InboxService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+// Fills inbox_entries for databases that already had chats before the inbox existed
+@Component
+public class InboxInitializer implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(InboxInitializer.class);
+
+    private final InboxService inboxService;
+
+    public InboxInitializer(InboxService inboxService) {
+        this.inboxService = inboxService;
+    }
+
+    @Override
+    public void run(String... args) {
+        int rebuilt = inboxService.rebuildIfEmpty();
+        if (rebuilt > 0) {
+            log.info("Rebuilt {} inbox entries from existing chats", rebuilt);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.chat.config;
+
+import com.example.chat.service.ChatSequencer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Numbers messages that were written before they had a seq, one transaction per batch.
+// Runs once all beans exist but before the web server starts, so no new message can take a seq first.
+@Component
+@ConditionalOnProperty(name = "chat.storage.engine", havingValue = "jpa", matchIfMissing = true)
+public class SequenceInitializer implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(SequenceInitializer.class);
+    private static final int BATCH_SIZE = 1000;
+
+    private final ChatSequencer sequencer;
+
+    public SequenceInitializer(ChatSequencer sequencer) {
+        this.sequencer = sequencer;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long total = 0;
+        int numbered;
+        while ((numbered = sequencer.sequenceUnnumbered(BATCH_SIZE)) > 0) {
+            total += numbered;
+        }
+        if (total > 0) log.info("Assigned sequence numbers to {} existing messages", total);
+    }
+}
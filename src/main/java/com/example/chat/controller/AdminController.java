@@ -0,0 +1,104 @@
+package com.example.chat.controller;
+
+import com.example.chat.service.ChatPurger;
+import com.example.chat.service.EntityCache;
+import com.example.chat.service.PresenceService;
+import com.example.chat.service.SearchIndexBackfill;
+import com.example.chat.service.SessionOutbox;
+import com.example.chat.store.MessageArchive;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Operational views of the running server
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final SessionOutbox sessionOutbox;
+    private final EntityCache entityCache;
+    private final MessageArchive messageArchive;
+    private final ChatPurger chatPurger;
+    private final PresenceService presence;
+    private final SearchIndexBackfill searchIndexBackfill;
+
+    public AdminController(SessionOutbox sessionOutbox, EntityCache entityCache, MessageArchive messageArchive,
+                           ChatPurger chatPurger, PresenceService presence, SearchIndexBackfill searchIndexBackfill) {
+        this.sessionOutbox = sessionOutbox;
+        this.entityCache = entityCache;
+        this.messageArchive = messageArchive;
+        this.chatPurger = chatPurger;
+        this.presence = presence;
+        this.searchIndexBackfill = searchIndexBackfill;
+    }
+
+    // Outbound queue depth per WebSocket session, lagging clients first
+    @GetMapping("/sessions")
+    public List<Map<String, Object>> getSessions() {
+        return sessionOutbox.stats();
+    }
+
+    // Size, hits, misses and evictions of the user/chat lookup caches
+    @GetMapping("/caches")
+    public Map<String, Object> getCaches() {
+        return entityCache.stats();
+    }
+
+    // Heap, GC and thread counters of the server JVM, polled by the load harness during soak runs
+    @GetMapping("/runtime")
+    public Map<String, Object> getRuntime() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+        List<Map<String, Object>> collectors = new ArrayList<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", gc.getName());
+            map.put("count", gc.getCollectionCount());
+            map.put("timeMs", gc.getCollectionTime());
+            collectors.add(map);
+        }
+
+        Map<String, Object> runtime = new LinkedHashMap<>();
+        runtime.put("uptimeMs", ManagementFactory.getRuntimeMXBean().getUptime());
+        runtime.put("heapUsed", heap.getUsed());
+        runtime.put("heapCommitted", heap.getCommitted());
+        runtime.put("heapMax", heap.getMax());
+        runtime.put("nonHeapUsed", nonHeap.getUsed());
+        runtime.put("threads", ManagementFactory.getThreadMXBean().getThreadCount());
+        runtime.put("gc", collectors);
+        return runtime;
+    }
+
+    // Messages left in the table vs. moved to archive segments
+    @GetMapping("/archive")
+    public Map<String, Object> getArchive() {
+        return messageArchive.stats();
+    }
+
+    // Deleted chats still waiting to be purged and how far the running purge got
+    @GetMapping("/purge")
+    public Map<String, Object> getPurge() {
+        return chatPurger.stats();
+    }
+
+    // Users announced online, typing events taken and dropped, presence and typing frames sent
+    @GetMapping("/presence")
+    public Map<String, Object> getPresence() {
+        return presence.stats();
+    }
+
+    // How far indexing of the messages written before search existed got
+    @GetMapping("/search-index")
+    public Map<String, Object> getSearchIndex() {
+        return searchIndexBackfill.stats();
+    }
+}
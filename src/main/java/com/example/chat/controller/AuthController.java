@@ -2,6 +2,8 @@ package com.example.chat.controller;
 
 import com.example.chat.model.User;
 import com.example.chat.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -11,6 +13,8 @@ import java.util.Optional;
 @RequestMapping("/api/auth")
 public class AuthController {
 
+    private static final Logger log = LoggerFactory.getLogger(AuthController.class);
+
     private final UserRepository userRepository;
 
     public AuthController(UserRepository userRepository) {
@@ -19,7 +23,7 @@ public class AuthController {
 
     @PostMapping("/register")
     public ResponseEntity<String> register(@RequestBody User user) {
-        System.out.println("Received registration for: " + user.getUsername()); // DEBUG LINE
+        log.debug("Received registration for: {}", user.getUsername());
 
         if (user.getUsername() == null || user.getPassword() == null) {
             return ResponseEntity.badRequest().body("Username or Password cannot be empty!");
@@ -3,22 +3,32 @@ package com.example.chat.controller;
 import com.example.chat.model.Chat;
 import com.example.chat.model.ChatMember;
 import com.example.chat.model.ChatMemberId;
-import com.example.chat.model.Message;
+import com.example.chat.model.ChatPreview;
 import com.example.chat.model.User;
 import com.example.chat.repository.ChatMemberRepository;
 import com.example.chat.repository.ChatRepository;
-import com.example.chat.repository.MessageRepository;
 import com.example.chat.repository.UserRepository;
+import com.example.chat.service.ChatEvents;
+import com.example.chat.service.ChatPurger;
+import com.example.chat.service.ChatMetrics;
+import com.example.chat.service.ChatRoutingIndex;
+import com.example.chat.service.EntityCache;
+import com.example.chat.service.InboxService;
+import com.example.chat.service.PresenceService;
+import com.example.chat.service.VersionStamps;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/chats")
@@ -31,79 +41,57 @@ public class ChatController {
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private MessageRepository messageRepository;
+    private ChatRoutingIndex routingIndex;
+    @Autowired
+    private InboxService inboxService;
+    @Autowired
+    private ChatEvents chatEvents;
+    @Autowired
+    private EntityCache entityCache;
+    @Autowired
+    private ChatPurger chatPurger;
+    @Autowired
+    private ChatMetrics metrics;
+    @Autowired
+    private VersionStamps versionStamps;
+    @Autowired
+    private PresenceService presence;
 
+    // Bodiless 304 while the chat list has not changed (the client reloads it after login and on reconnect)
     @GetMapping("/user/{userId}")
-    public List<Map<String, Object>> getUserChats(@PathVariable Long userId) {
-        List<ChatMember> memberships = chatMemberRepository.findByUserId(userId);
-        List<Map<String, Object>> response = new ArrayList<>();
+    public List<Map<String, Object>> getUserChats(@PathVariable Long userId, WebRequest request) {
+        // Stamp first: a change landing during the query then only costs the next request a full response
+        if (request.checkNotModified(versionStamps.inboxEtag(userId))) {
+            return null; // 304 already set
+        }
+        return getUserChats(userId);
+    }
 
-        for (ChatMember member : memberships) {
-            Chat chat = chatRepository.findById(member.getChatId())
-                    .orElseThrow(() -> new RuntimeException("Chat not found"));
-
-            // Find the OTHER user's name
-//            List<ChatMember> allMembers = chatMemberRepository.findByChatId(chat.getId());
-            String displayName = chat.getChatName();
-
-            // If it's a private chat (usually indicated by a generic name or null),
-            // then use the "other user" logic. Otherwise, use the group name.
-            if (displayName == null || displayName.equals("Private Chat") || displayName.isEmpty()) {
-                List<ChatMember> allMembers = chatMemberRepository.findByChatId(chat.getId());
-                for (ChatMember m : allMembers) {
-                    if (!m.getUserId().equals(userId)) {
-                        User otherUser = userRepository.findById(m.getUserId()).orElseThrow();
-                        displayName = otherUser.getUsername();
-                        break;
-                    }
-                }
-            }
+    public List<Map<String, Object>> getUserChats(Long userId) {
+        // Already sorted: unread first, then newest first
+        List<Map<String, Object>> response = new ArrayList<>();
 
-            Optional<Message> lastMessageOpt = messageRepository.findFirstByChatIdOrderBySentAtDesc(chat.getId());
+        for (ChatPreview entry : inboxService.chatList(userId)) {
             String lastMessageText = "No messages yet";
-
             // Use a default ISO string for chats with no messages
             String lastTimeStr = "1970-01-01T00:00:00";
-            boolean hasUnread = false;
-
-            if (lastMessageOpt.isPresent()) {
-                Message msg = lastMessageOpt.get();
-                lastTimeStr = msg.getSentAt().toString();
 
-                String prefix = msg.getAuthor().getId().equals(userId) ? "You: " : msg.getAuthor().getUsername() + ": ";
-                lastMessageText = prefix + msg.getContent();
-
-                // Unread check
-                if (member.getLastWatched() == null || msg.getSentAt().isAfter(member.getLastWatched())) {
-                    if (!msg.getAuthor().getId().equals(userId)) {
-                        hasUnread = true;
-                    }
-                }
+            if (entry.lastMessageAt() != null) {
+                lastTimeStr = entry.lastMessageAt().toString();
+                String prefix = userId.equals(entry.lastMessageAuthorId()) ? "You: " : entry.lastMessageAuthor() + ": ";
+                lastMessageText = prefix + entry.lastMessagePreview();
             }
 
             Map<String, Object> map = new HashMap<>();
-            map.put("id", chat.getId());
-            map.put("chatName", displayName);
+            map.put("id", entry.chatId());
+            map.put("chatName", entry.displayName());
             map.put("lastMessage", lastMessageText);
-            map.put("hasUnread", hasUnread);
+            map.put("hasUnread", entry.unreadCount() > 0);
             map.put("lastMessageTime", lastTimeStr);
             response.add(map);
         }
 
-        // UPDATED SORTING LOGIC:
-        response.sort((a, b) -> {
-            // Tier 1: Unread status (Highest Priority)
-            boolean unreadA = (boolean) a.get("hasUnread");
-            boolean unreadB = (boolean) b.get("hasUnread");
-            if (unreadA != unreadB) {
-                return Boolean.compare(unreadB, unreadA);
-            }
-
-            // Tier 2: Time (Newest first)
-            // String comparison works for ISO dates (YYYY-MM-DDTHH:mm:ss)
-            return ((String) b.get("lastMessageTime")).compareTo((String) a.get("lastMessageTime"));
-        });
-
+        metrics.recordChatList(response.size());
         return response;
     }
 
@@ -119,15 +107,21 @@ public class ChatController {
 
         Chat chatToReturn;
         if (existingChatId.isPresent()) {
-            chatToReturn = chatRepository.findById(existingChatId.get()).get();
+            chatToReturn = entityCache.findChat(existingChatId.get()).get();
         } else {
+            User creator = entityCache.findUser(creatorId).get();
             Chat newChat = new Chat();
-            newChat.setChatName("Private Chat"); // Generic name in DB
-            newChat.setCreator(userRepository.findById(creatorId).get());
+            newChat.setChatName(InboxService.PRIVATE_CHAT_NAME); // Generic name in DB
+            newChat.setCreator(creator);
             chatToReturn = chatRepository.save(newChat);
 
-            chatMemberRepository.save(new ChatMember(chatToReturn.getId(), creatorId));
-            chatMemberRepository.save(new ChatMember(chatToReturn.getId(), targetId));
+            chatMemberRepository.saveAll(List.of(
+                    new ChatMember(chatToReturn.getId(), creatorId),
+                    new ChatMember(chatToReturn.getId(), targetId)));
+            routingIndex.addMember(chatToReturn.getId(), creatorId);
+            routingIndex.addMember(chatToReturn.getId(), targetId);
+            chatEvents.chatCreated(inboxService.chatCreated(chatToReturn, List.of(creator, targetUser.get())));
+            presence.chatCreated(chatToReturn.getId());
         }
 
         // FIX: Instead of returning the Chat entity, return a Map with the CORRECT name
@@ -145,23 +139,35 @@ public class ChatController {
             @RequestBody List<String> usernames) {
 
         // 1. Create the Chat Entity
+        User creator = entityCache.findUser(creatorId).get();
         Chat newChat = new Chat();
         newChat.setChatName(groupName.isEmpty() ? "New Group" : groupName);
-        newChat.setCreator(userRepository.findById(creatorId).get());
+        newChat.setCreator(creator);
         Chat savedChat = chatRepository.save(newChat);
 
-        // 2. Add the Creator as a member
-        chatMemberRepository.save(new ChatMember(savedChat.getId(), creatorId));
-
-        // 3. Add all other users by their usernames
+        // 2. The Creator plus all other users by their usernames, looked up in one query
+        List<User> members = new ArrayList<>();
+        members.add(creator);
+        Set<String> names = new HashSet<>();
         for (String username : usernames) {
-            userRepository.findByUsername(username.trim()).ifPresent(user -> {
-                if (!user.getId().equals(creatorId)) { // Don't add creator twice
-                    chatMemberRepository.save(new ChatMember(savedChat.getId(), user.getId()));
-                }
-            });
+            names.add(username.trim());
+        }
+        for (User user : userRepository.findByUsernameIn(names)) {
+            if (!user.getId().equals(creatorId)) members.add(user); // Don't add creator twice
         }
 
+        // 3. One batched insert for all membership rows
+        List<ChatMember> rows = new ArrayList<>(members.size());
+        for (User member : members) {
+            rows.add(new ChatMember(savedChat.getId(), member.getId()));
+        }
+        chatMemberRepository.saveAll(rows);
+        for (User member : members) {
+            routingIndex.addMember(savedChat.getId(), member.getId());
+        }
+        chatEvents.chatCreated(inboxService.chatCreated(savedChat, members));
+        presence.chatCreated(savedChat.getId());
+
         // 4. Return the new chat info
         Map<String, Object> response = new HashMap<>();
         response.put("id", savedChat.getId());
@@ -175,20 +181,21 @@ public class ChatController {
             m.setLastWatched(LocalDateTime.now());
             chatMemberRepository.save(m);
         });
+        inboxService.markRead(chatId, userId);
         return ResponseEntity.ok().build();
     }
 
+    // Quick tombstone only, the messages are removed in the background by ChatPurger
     @DeleteMapping("/{chatId}")
     public ResponseEntity<?> deleteChat(@PathVariable Long chatId) {
-        // 1. Remove all members from the chat first
-        chatMemberRepository.deleteAll(chatMemberRepository.findByChatId(chatId));
-
-        // 2. Remove all messages (Optional, depending on your DB cascade settings)
-        messageRepository.deleteAll(messageRepository.findByChatId(chatId));
-
-        // 3. Delete the chat itself
-        chatRepository.deleteById(chatId);
+        // 1. Mark the chat deleted and drop its members and chat list rows (a repeated delete is a no-op)
+        if (chatPurger.tombstone(chatId)) {
+            entityCache.evictChat(chatId);
 
+            // 2. Tell online members, then stop routing live messages to it
+            chatEvents.chatDeleted(chatId);
+            routingIndex.removeChat(chatId);
+        }
         return ResponseEntity.ok().build();
     }
 }
\ No newline at end of file
@@ -1,35 +1,66 @@
 package com.example.chat.controller;
 
 import com.example.chat.model.Message;
-import com.example.chat.repository.MessageRepository;
+import com.example.chat.service.ChatMetrics;
+import com.example.chat.service.MessageSearchService;
 import com.example.chat.service.MessageService;
+import com.example.chat.service.SearchIndexBackfill;
+import com.example.chat.service.VersionStamps;
+import com.example.chat.store.MessageStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/messages")
 public class MessageController {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    @Autowired
+    private MessageStore messageStore;
+    @Autowired
+    private ChatMetrics metrics;
     @Autowired
-    private MessageRepository messageRepository;
+    private VersionStamps versionStamps;
+    @Autowired
+    private SearchIndexBackfill searchIndexBackfill;
 
     private final MessageService service;
+    private final MessageSearchService searchService;
 
-    public MessageController(MessageService service) {
+    public MessageController(MessageService service, MessageSearchService searchService) {
         this.service = service;
+        this.searchService = searchService;
     }
 
+    // The newest MAX_PAGE_SIZE messages, oldest first. Older ones only through /{chatId}/page.
     @GetMapping("/{chatId}")
-    public List<Map<String, String>> getHistory(@PathVariable Long chatId) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
+    public List<Map<String, String>> getHistory(@PathVariable Long chatId, WebRequest request) {
+        if (request.checkNotModified(versionStamps.chatEtag(chatId))) {
+            return null; // 304 already set
+        }
+        return getHistory(chatId);
+    }
+
+    public List<Map<String, String>> getHistory(Long chatId) {
+        List<Message> messages = new ArrayList<>(messageStore.pageBefore(chatId, Long.MAX_VALUE, MAX_PAGE_SIZE));
+        Collections.reverse(messages); // Fetched newest first
+        metrics.recordHistory(messages.size());
 
-        return messageRepository.findByChatIdOrderBySentAtAsc(chatId).stream()
+        return messages.stream()
                 .map(m -> {
-                    Map<String, String> map = new java.util.LinkedHashMap<>();
-                    map.put("time", m.getSentAt().format(formatter));
+                    Map<String, String> map = new LinkedHashMap<>();
+                    map.put("time", m.getSentAt().format(TIME_FORMAT));
                     map.put("author", m.getAuthor().getUsername());
                     map.put("content", m.getContent());
                     return map;
@@ -37,6 +68,123 @@ public class MessageController {
                 .toList();
     }
 
+    /**
+     * One page of a chat's history, oldest message first.
+     * Without a cursor returns the latest messages. "before" pages back in time,
+     * "after" catches up on messages newer than the given id.
+     * "nextCursor" is the value to pass in the same parameter for the next page, or null when there is none.
+     * Carries the chat's ETag: with a matching If-None-Match nothing is queried and the answer is a 304.
+     */
+    @GetMapping("/{chatId}/page")
+    public ResponseEntity<?> getHistoryPage(@PathVariable Long chatId,
+                                            @RequestParam(required = false) Long before,
+                                            @RequestParam(required = false) Long after,
+                                            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+                                            WebRequest request) {
+        // Stamp first: a message landing during the query then only costs the next request a full response
+        if (request.checkNotModified(versionStamps.chatEtag(chatId))) {
+            return null; // 304 already set
+        }
+        return getHistoryPage(chatId, before, after, limit);
+    }
+
+    public ResponseEntity<?> getHistoryPage(Long chatId, Long before, Long after, int limit) {
+        if (before != null && after != null) {
+            return ResponseEntity.badRequest().body("Use either 'before' or 'after', not both");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // Ask for one extra row to know whether another page exists
+        List<Message> rows;
+        if (after != null) {
+            rows = messageStore.pageAfter(chatId, after, pageSize + 1);
+        } else {
+            long beforeId = before != null ? before : Long.MAX_VALUE;
+            rows = messageStore.pageBefore(chatId, beforeId, pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Message> page = new ArrayList<>(hasMore ? rows.subList(0, pageSize) : rows);
+        metrics.recordHistory(page.size());
+        if (after == null) {
+            Collections.reverse(page); // Fetched newest first
+        }
+
+        Long nextCursor = null;
+        if (hasMore) {
+            nextCursor = after != null ? page.get(page.size() - 1).getId() : page.get(0).getId();
+        }
+
+        List<Map<String, Object>> messages = new ArrayList<>(page.size());
+        for (Message m : page) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", m.getId());
+            map.put("time", m.getSentAt().format(TIME_FORMAT));
+            map.put("author", m.getAuthor().getUsername());
+            map.put("content", m.getContent());
+            messages.add(map);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("messages", messages);
+        response.put("nextCursor", nextCursor);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Messages of one chat containing every word of "q", best match first. Only for the chat's members.
+     * "page" is zero-based; "hasMore" is false once a page comes back short.
+     * "complete" is false while older messages are still being indexed and may be missing from the results.
+     */
+    @GetMapping("/{chatId}/search")
+    public ResponseEntity<?> searchChat(@PathVariable Long chatId,
+                                        @RequestParam Long userId,
+                                        @RequestParam String q,
+                                        @RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        if (!searchService.isMember(userId, chatId)) {
+            return ResponseEntity.status(403).body("Not a member of this chat");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+        List<Message> hits = searchService.searchChat(chatId, q, pageNumber, pageSize);
+        return ResponseEntity.ok(searchResponse(hits, pageNumber, pageSize));
+    }
+
+    // Same as above, across every chat the user is a member of
+    @GetMapping("/search")
+    public ResponseEntity<?> searchUserChats(@RequestParam Long userId,
+                                             @RequestParam String q,
+                                             @RequestParam(defaultValue = "0") int page,
+                                             @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+        List<Message> hits = searchService.searchUserChats(userId, q, pageNumber, pageSize);
+        return ResponseEntity.ok(searchResponse(hits, pageNumber, pageSize));
+    }
+
+    private Map<String, Object> searchResponse(List<Message> hits, int page, int pageSize) {
+        List<Map<String, Object>> results = new ArrayList<>(hits.size());
+        for (Message m : hits) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", m.getId());
+            map.put("chatId", m.getChat().getId());
+            map.put("time", m.getSentAt().format(TIME_FORMAT));
+            map.put("author", m.getAuthor().getUsername());
+            map.put("content", m.getContent());
+            results.add(map);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("results", results);
+        response.put("page", page);
+        // A full page may be the last one, the next request then just comes back empty
+        response.put("hasMore", hits.size() == pageSize);
+        response.put("complete", searchIndexBackfill.isComplete());
+        return response;
+    }
+
+    // Also sent to the chat's online members, in seq order with the WebSocket messages
     @PostMapping
     public Message sendMessage(@RequestBody Message message) {
         return service.save(message);
@@ -0,0 +1,70 @@
+package com.example.chat.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// One immutable, compressed file of archived messages of a chat (see MessageArchive)
+@Entity
+@Table(name = "archive_segments", indexes = {
+        @Index(name = "idx_archive_segments_chat", columnList = "chat_id, first_message_id"),
+        @Index(name = "idx_archive_segments_last_id", columnList = "last_message_id")
+})
+public class ArchiveSegment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Column(name = "first_message_id", nullable = false)
+    private Long firstMessageId;
+
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    private int messageCount;
+
+    private long sizeBytes;
+
+    // Relative to chat.archive.dir
+    @Column(nullable = false)
+    private String fileName;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public ArchiveSegment() {}
+
+    public ArchiveSegment(Long chatId, Long firstMessageId, Long lastMessageId, int messageCount, long sizeBytes, String fileName) {
+        this.chatId = chatId;
+        this.firstMessageId = firstMessageId;
+        this.lastMessageId = lastMessageId;
+        this.messageCount = messageCount;
+        this.sizeBytes = sizeBytes;
+        this.fileName = fileName;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getChatId() { return chatId; }
+    public void setChatId(Long chatId) { this.chatId = chatId; }
+
+    public Long getFirstMessageId() { return firstMessageId; }
+    public void setFirstMessageId(Long firstMessageId) { this.firstMessageId = firstMessageId; }
+
+    public Long getLastMessageId() { return lastMessageId; }
+    public void setLastMessageId(Long lastMessageId) { this.lastMessageId = lastMessageId; }
+
+    public int getMessageCount() { return messageCount; }
+    public void setMessageCount(int messageCount) { this.messageCount = messageCount; }
+
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -1,23 +1,31 @@
 package com.example.chat.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "chats")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // Lazy proxies of it get serialized too
 public class Chat {
+    // Pooled sequence, see Message
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_id")
+    @SequenceGenerator(name = "chat_id", sequenceName = "chats_seq", allocationSize = Message.ID_ALLOCATION_SIZE)
     private Long id;
 
     private String chatName;
 
-    @ManyToOne
+    // Lazy: chats are looked up on every message (EntityCache), the creator is hardly ever needed
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "creator_id")
     private User creator;
 
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Set when the chat is deleted; its rows stay until ChatPurger removes them
+    private LocalDateTime deletedAt;
+
 
     public Chat() {}
 
@@ -52,4 +60,12 @@ public class Chat {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
 }
\ No newline at end of file
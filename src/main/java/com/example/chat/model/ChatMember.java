@@ -1,13 +1,14 @@
 package com.example.chat.model;
 
 import jakarta.persistence.*;
-import java.io.Serializable;
+import org.springframework.data.domain.Persistable;
+
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "chat_members")
 @IdClass(ChatMemberId.class) // Links to the ID helper class below
-public class ChatMember {
+public class ChatMember implements Persistable<ChatMemberId> {
     @Id
     private Long chatId;
     @Id
@@ -17,6 +18,10 @@ public class ChatMember {
     private LocalDateTime joinedAt = LocalDateTime.now();
     private LocalDateTime lastWatched = LocalDateTime.now();
 
+    // New rows are persisted without the SELECT merge() would do first, so saveAll() is one batched insert
+    @Transient
+    private boolean isNew = true;
+
     // 1. Mandatory No-Args Constructor for JPA
     public ChatMember() {}
 
@@ -26,6 +31,16 @@ public class ChatMember {
         this.userId = userId;
     }
 
+    @Override
+    public ChatMemberId getId() { return new ChatMemberId(chatId, userId); }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+
     public Long getChatId() {
         return chatId;
     }
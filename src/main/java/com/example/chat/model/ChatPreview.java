@@ -0,0 +1,11 @@
+package com.example.chat.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of a user's chat list, read straight from inbox_entries (see InboxRepository.findChatList).
+ * A record instead of the InboxEntry entity: nothing to track for changes, and only the columns the list shows.
+ */
+public record ChatPreview(Long chatId, String displayName, Long lastMessageAuthorId, String lastMessageAuthor,
+                          String lastMessagePreview, LocalDateTime lastMessageAt, int unreadCount) {
+}
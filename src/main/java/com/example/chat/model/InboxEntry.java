@@ -0,0 +1,92 @@
+package com.example.chat.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of a user's chat list, kept up to date when messages are written
+ * so the dashboard is a single read over (user_id, last_message_at).
+ */
+@Entity
+@Table(name = "inbox_entries", indexes = {
+        @Index(name = "idx_inbox_user_last_message", columnList = "user_id, last_message_at"),
+        @Index(name = "idx_inbox_chat", columnList = "chat_id")
+})
+@IdClass(InboxEntryId.class)
+public class InboxEntry implements Persistable<InboxEntryId> {
+    public static final int PREVIEW_LENGTH = 100;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+    @Id
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    // Group name, or the other person's username for private chats
+    private String displayName;
+
+    private Long lastMessageAuthorId;
+    private String lastMessageAuthor;
+
+    @Column(length = PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    private int unreadCount = 0;
+
+    // Rows are inserted once and then only changed by bulk updates, so saveAll() needs no SELECT per row
+    @Transient
+    private boolean isNew = true;
+
+    public InboxEntry() {}
+
+    public InboxEntry(Long userId, Long chatId, String displayName) {
+        this.userId = userId;
+        this.chatId = chatId;
+        this.displayName = displayName;
+    }
+
+    public static String preview(String content) {
+        if (content == null) return "";
+        return content.length() <= PREVIEW_LENGTH ? content : content.substring(0, PREVIEW_LENGTH);
+    }
+
+    @Override
+    public InboxEntryId getId() { return new InboxEntryId(userId, chatId); }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public Long getChatId() { return chatId; }
+    public void setChatId(Long chatId) { this.chatId = chatId; }
+
+    public String getDisplayName() { return displayName; }
+    public void setDisplayName(String displayName) { this.displayName = displayName; }
+
+    public Long getLastMessageAuthorId() { return lastMessageAuthorId; }
+    public void setLastMessageAuthorId(Long lastMessageAuthorId) { this.lastMessageAuthorId = lastMessageAuthorId; }
+
+    public String getLastMessageAuthor() { return lastMessageAuthor; }
+    public void setLastMessageAuthor(String lastMessageAuthor) { this.lastMessageAuthor = lastMessageAuthor; }
+
+    public String getLastMessagePreview() { return lastMessagePreview; }
+    public void setLastMessagePreview(String lastMessagePreview) { this.lastMessagePreview = lastMessagePreview; }
+
+    public LocalDateTime getLastMessageAt() { return lastMessageAt; }
+    public void setLastMessageAt(LocalDateTime lastMessageAt) { this.lastMessageAt = lastMessageAt; }
+
+    public int getUnreadCount() { return unreadCount; }
+    public void setUnreadCount(int unreadCount) { this.unreadCount = unreadCount; }
+}
@@ -0,0 +1,36 @@
+package com.example.chat.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+public class InboxEntryId implements Serializable {
+
+    private Long userId;
+    private Long chatId;
+
+    public InboxEntryId() {}
+
+    public InboxEntryId(Long userId, Long chatId) {
+        this.userId = userId;
+        this.chatId = chatId;
+    }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public Long getChatId() { return chatId; }
+    public void setChatId(Long chatId) { this.chatId = chatId; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        InboxEntryId that = (InboxEntryId) o;
+        return Objects.equals(userId, that.userId) &&
+                Objects.equals(chatId, that.chatId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userId, chatId);
+    }
+}
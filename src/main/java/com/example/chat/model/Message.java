@@ -4,17 +4,34 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_chat_id_id", columnList = "chat_id, id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_messages_chat_id_seq", columnNames = {"chat_id", "seq"})
+})
 public class Message {
+    // Ids reserved per sequence call, for every entity with a pooled sequence
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled sequence instead of IDENTITY: Hibernate reserves 50 ids per round trip and can batch the inserts.
+    // IdSequenceAligner moves the sequence past existing ids on startup.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "message_id")
+    @SequenceGenerator(name = "message_id", sequenceName = "messages_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
-    @ManyToOne
+    // Lazy: the message path has chat and author at hand already, and history reads project
+    // the few columns it shows (see MessageRepository), so neither row is worth loading with every message
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "chat_id", nullable = false)
     private Chat chat;
 
-    @ManyToOne
+    // Position in the chat: 1, 2, 3..., assigned by ChatSequencer when the message is stored, in id order.
+    // A gap is left only where a write rolled back after a later message of the chat was numbered.
+    // Null only for rows written before the column existed, until SequenceInitializer numbers them.
+    private Long seq;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "author_id", nullable = false)
     private User author;
 
@@ -44,6 +61,9 @@ public class Message {
     public Chat getChat() { return chat; }
     public void setChat(Chat chat) { this.chat = chat; }
 
+    public Long getSeq() { return seq; }
+    public void setSeq(Long seq) { this.seq = seq; }
+
     public User getAuthor() { return author; }
     public void setAuthor(User author) { this.author = author; }
 
@@ -0,0 +1,68 @@
+package com.example.chat.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * One posting of the message search index: "term occurs in message, this many times".
+ * The primary key (term, message_id) is what a search scans; chat_id is copied here
+ * so a search can be limited to some chats without joining messages.
+ */
+@Entity
+@Table(name = "message_terms", indexes = {
+        @Index(name = "idx_message_terms_term_chat", columnList = "term, chat_id, message_id"),
+        @Index(name = "idx_message_terms_chat", columnList = "chat_id")
+})
+@IdClass(MessageTermId.class)
+public class MessageTerm implements Persistable<MessageTermId> {
+
+    public static final int MAX_TERM_LENGTH = 64;
+
+    @Id
+    @Column(name = "term", length = MAX_TERM_LENGTH)
+    private String term;
+
+    @Id
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    private int frequency;
+
+    // Rows are only ever inserted, never merged, so saveAll() needs no SELECT per row
+    @Transient
+    private boolean isNew = true;
+
+    public MessageTerm() {}
+
+    public MessageTerm(String term, Long messageId, Long chatId, int frequency) {
+        this.term = term;
+        this.messageId = messageId;
+        this.chatId = chatId;
+        this.frequency = frequency;
+    }
+
+    @Override
+    public MessageTermId getId() { return new MessageTermId(term, messageId); }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+
+    public String getTerm() { return term; }
+    public void setTerm(String term) { this.term = term; }
+
+    public Long getMessageId() { return messageId; }
+    public void setMessageId(Long messageId) { this.messageId = messageId; }
+
+    public Long getChatId() { return chatId; }
+    public void setChatId(Long chatId) { this.chatId = chatId; }
+
+    public int getFrequency() { return frequency; }
+    public void setFrequency(int frequency) { this.frequency = frequency; }
+}
@@ -0,0 +1,36 @@
+package com.example.chat.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+public class MessageTermId implements Serializable {
+
+    private String term;
+    private Long messageId;
+
+    public MessageTermId() {}
+
+    public MessageTermId(String term, Long messageId) {
+        this.term = term;
+        this.messageId = messageId;
+    }
+
+    public String getTerm() { return term; }
+    public void setTerm(String term) { this.term = term; }
+    public Long getMessageId() { return messageId; }
+    public void setMessageId(Long messageId) { this.messageId = messageId; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessageTermId that = (MessageTermId) o;
+        return Objects.equals(term, that.term) &&
+                Objects.equals(messageId, that.messageId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(term, messageId);
+    }
+}
@@ -1,18 +1,25 @@
 package com.example.chat.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // Lazy proxies of it get serialized too
 public class User {
+    // Pooled sequence, see Message
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_id")
+    @SequenceGenerator(name = "user_id", sequenceName = "users_seq", allocationSize = Message.ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(unique = true, nullable = false)
     private String username;
 
+    // Accepted in request bodies, never written into a response
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
 
     @Column(nullable = true)
@@ -0,0 +1,32 @@
+package com.example.chat.repository;
+
+import com.example.chat.model.ArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ArchiveSegmentRepository extends JpaRepository<ArchiveSegment, Long> {
+
+    List<ArchiveSegment> findByChatIdOrderByFirstMessageIdAsc(Long chatId);
+
+    // 0 when nothing of the chat is archived
+    @Query("SELECT COALESCE(MAX(s.lastMessageId), 0) FROM ArchiveSegment s WHERE s.chatId = :chatId")
+    long findLastArchivedId(@Param("chatId") Long chatId);
+
+    // Segments whose id range overlaps [fromId, toId] (ranges of different chats overlap too)
+    @Query("SELECT s FROM ArchiveSegment s WHERE s.firstMessageId <= :toId AND s.lastMessageId >= :fromId ORDER BY s.firstMessageId ASC")
+    List<ArchiveSegment> findOverlapping(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT COALESCE(SUM(s.messageCount), 0) FROM ArchiveSegment s")
+    long sumMessageCount();
+
+    @Query("SELECT COALESCE(SUM(s.sizeBytes), 0) FROM ArchiveSegment s")
+    long sumSizeBytes();
+
+    @Modifying
+    @Query("DELETE FROM ArchiveSegment s WHERE s.chatId = :chatId")
+    int deleteByChat(@Param("chatId") Long chatId);
+}
@@ -3,6 +3,10 @@ package com.example.chat.repository;
 import com.example.chat.model.ChatMember;
 import com.example.chat.model.ChatMemberId; // The ID class we made
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
 
 public interface ChatMemberRepository extends JpaRepository<ChatMember, ChatMemberId> {
@@ -12,6 +16,14 @@ public interface ChatMemberRepository extends JpaRepository<ChatMember, ChatMemb
     // Find all members of a specific chat
     List<ChatMember> findByChatId(Long chatId);
 
+    @Query("SELECT m.userId FROM ChatMember m WHERE m.chatId = :chatId")
+    List<Long> findUserIdsByChat(@Param("chatId") Long chatId);
+
     // Finds only your membership in that specific chat
     void deleteByChatIdAndUserId(Long chatId, Long userId);
+
+    // One statement instead of loading and deleting every member
+    @Modifying
+    @Query("DELETE FROM ChatMember m WHERE m.chatId = :chatId")
+    int deleteByChat(@Param("chatId") Long chatId);
 }
\ No newline at end of file
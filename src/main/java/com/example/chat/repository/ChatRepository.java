@@ -2,14 +2,31 @@ package com.example.chat.repository;
 
 import com.example.chat.model.Chat;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface ChatRepository extends JpaRepository<Chat, Long> {
 
+    @Query("SELECT c.id FROM Chat c WHERE c.deletedAt IS NULL")
+    List<Long> findAllIds();
+
+    // Deleted chats are tombstoned first and purged later, lookups must not see them in between
+    @Query("SELECT c FROM Chat c WHERE c.id = :id AND c.deletedAt IS NULL")
+    Optional<Chat> findLiveById(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE Chat c SET c.deletedAt = :deletedAt WHERE c.id = :id AND c.deletedAt IS NULL")
+    int markDeleted(@Param("id") Long id, @Param("deletedAt") LocalDateTime deletedAt);
+
+    // Tombstoned chats still waiting for ChatPurger, oldest first
+    @Query("SELECT c.id FROM Chat c WHERE c.deletedAt IS NOT NULL ORDER BY c.deletedAt ASC")
+    List<Long> findDeletedIds();
+
     // Find all chats created by a specific user ID
     List<Chat> findByCreatorId(Long creatorId);
 
@@ -0,0 +1,57 @@
+package com.example.chat.repository;
+
+import com.example.chat.model.ChatPreview;
+import com.example.chat.model.InboxEntry;
+import com.example.chat.model.InboxEntryId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface InboxRepository extends JpaRepository<InboxEntry, InboxEntryId> {
+
+    // The whole chat list of a user, unread chats first, then newest first
+    @Query("""
+        SELECT new com.example.chat.model.ChatPreview(e.chatId, e.displayName, e.lastMessageAuthorId,
+            e.lastMessageAuthor, e.lastMessagePreview, e.lastMessageAt, e.unreadCount)
+        FROM InboxEntry e
+        WHERE e.userId = :userId
+        ORDER BY CASE WHEN e.unreadCount > 0 THEN 0 ELSE 1 END, e.lastMessageAt DESC NULLS LAST
+    """)
+    List<ChatPreview> findChatList(@Param("userId") Long userId);
+
+    // Updates every member's row of the chat in one statement, for the chat's messages of one batch.
+    // The last message is the preview; its author has obviously seen the chat, everyone else gets
+    // count more unread messages (other authors of the batch are corrected with setUnread).
+    @Modifying
+    @Query("""
+        UPDATE InboxEntry e SET
+            e.lastMessageAuthorId = :authorId,
+            e.lastMessageAuthor = :author,
+            e.lastMessagePreview = :preview,
+            e.lastMessageAt = :sentAt,
+            e.unreadCount = CASE WHEN e.userId = :authorId THEN 0 ELSE e.unreadCount + :count END
+        WHERE e.chatId = :chatId
+    """)
+    int recordMessages(@Param("chatId") Long chatId,
+                       @Param("authorId") Long authorId,
+                       @Param("author") String author,
+                       @Param("preview") String preview,
+                       @Param("sentAt") LocalDateTime sentAt,
+                       @Param("count") int count);
+
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.unreadCount = :unread WHERE e.userId = :userId AND e.chatId = :chatId")
+    int setUnread(@Param("chatId") Long chatId, @Param("userId") Long userId, @Param("unread") int unread);
+
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.unreadCount = 0 WHERE e.userId = :userId AND e.chatId = :chatId")
+    int markRead(@Param("chatId") Long chatId, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM InboxEntry e WHERE e.chatId = :chatId")
+    int deleteByChat(@Param("chatId") Long chatId);
+}
@@ -1,16 +1,67 @@
 package com.example.chat.repository;
 
 import com.example.chat.model.Message;
+import com.example.chat.store.StoredMessage;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
+
+    // Read model of the history queries: the message columns plus the author's name, straight into records.
+    // No Message/User/Chat entities are loaded (so no password, no chat row, nothing in the persistence context).
+    String STORED_MESSAGE = """
+        SELECT new com.example.chat.store.StoredMessage(
+            m.id, m.chat.id, COALESCE(m.seq, 0L), a.id, a.username, m.sentAt, m.content)
+        FROM Message m JOIN m.author a
+    """;
+
     // Loads the history for a specific chat, sorted by time
     List<Message> findByChatIdOrderBySentAtAsc(Long chatId);
 
     Optional<Message> findFirstByChatIdOrderBySentAtDesc(Long chatId);
 
-    List<Message> findByChatId(Long chatId);
+    // Keyset pages over the (chat_id, id) index: newest first when scrolling back...
+    @Query(STORED_MESSAGE + "WHERE m.chat.id = :chatId AND m.id < :beforeId ORDER BY m.id DESC")
+    List<StoredMessage> findPageBefore(@Param("chatId") Long chatId, @Param("beforeId") Long beforeId, Limit limit);
+
+    // ...and oldest first when catching up on newer messages
+    @Query(STORED_MESSAGE + "WHERE m.chat.id = :chatId AND m.id > :afterId ORDER BY m.id ASC")
+    List<StoredMessage> findPageAfter(@Param("chatId") Long chatId, @Param("afterId") Long afterId, Limit limit);
+
+    // Replay after a reconnect, over the (chat_id, seq) unique index
+    @Query(STORED_MESSAGE + "WHERE m.chat.id = :chatId AND m.seq > :afterSeq ORDER BY m.seq ASC")
+    List<StoredMessage> findPageAfterSeq(@Param("chatId") Long chatId, @Param("afterSeq") Long afterSeq, Limit limit);
+
+    @Query("SELECT MAX(m.seq) FROM Message m WHERE m.chat.id = :chatId")
+    Long findMaxSeq(@Param("chatId") Long chatId);
+
+    // Rows from before messages had a seq, oldest first
+    @Query("SELECT m FROM Message m WHERE m.seq IS NULL ORDER BY m.id ASC")
+    List<Message> findUnsequenced(Limit limit);
+
+    // Search hits, in no particular order
+    @Query(STORED_MESSAGE + "WHERE m.id IN :ids")
+    List<StoredMessage> findStoredByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Purge of a deleted chat, one chunk of ids at a time
+    @Query("SELECT m.id FROM Message m WHERE m.chat.id = :chatId ORDER BY m.id ASC")
+    List<Long> findIdsByChat(@Param("chatId") Long chatId, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MAX(m.id) FROM Message m")
+    Long findMaxId();
+
+    // Walks the whole table from the newest id down, for backfills
+    @Query("SELECT m FROM Message m WHERE m.id < :beforeId ORDER BY m.id DESC")
+    List<Message> findAllBefore(@Param("beforeId") Long beforeId, Limit limit);
 }
@@ -0,0 +1,56 @@
+package com.example.chat.repository;
+
+import com.example.chat.model.MessageTerm;
+import com.example.chat.model.MessageTermId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MessageTermRepository extends JpaRepository<MessageTerm, MessageTermId> {
+
+    // Messages of one chat containing every term. Best match first (most occurrences),
+    // newest first among equals.
+    @Query("""
+        SELECT t.messageId FROM MessageTerm t
+        WHERE t.term IN :terms AND t.chatId = :chatId
+        GROUP BY t.messageId
+        HAVING COUNT(t.term) = :termCount
+        ORDER BY SUM(t.frequency) DESC, t.messageId DESC
+    """)
+    List<Long> searchChat(@Param("chatId") Long chatId,
+                          @Param("terms") Collection<String> terms,
+                          @Param("termCount") long termCount,
+                          Pageable pageable);
+
+    // Same, over every chat the user is a member of
+    @Query("""
+        SELECT t.messageId FROM MessageTerm t
+        WHERE t.term IN :terms
+          AND t.chatId IN (SELECT cm.chatId FROM ChatMember cm WHERE cm.userId = :userId)
+        GROUP BY t.messageId
+        HAVING COUNT(t.term) = :termCount
+        ORDER BY SUM(t.frequency) DESC, t.messageId DESC
+    """)
+    List<Long> searchUserChats(@Param("userId") Long userId,
+                               @Param("terms") Collection<String> terms,
+                               @Param("termCount") long termCount,
+                               Pageable pageable);
+
+    // Lowest indexed message, where an interrupted backfill carries on
+    @Query("SELECT MIN(t.messageId) FROM MessageTerm t")
+    Long findMinMessageId();
+
+    // Which of these messages already have postings
+    @Query("SELECT DISTINCT t.messageId FROM MessageTerm t WHERE t.messageId IN :ids")
+    List<Long> findIndexedMessageIds(@Param("ids") Collection<Long> ids);
+
+    // At most limit rows of the chat per call (JPQL deletes have no row limit)
+    @Modifying
+    @Query(value = "DELETE FROM message_terms WHERE chat_id = :chatId FETCH FIRST :limit ROWS ONLY", nativeQuery = true)
+    int deleteChunkByChat(@Param("chatId") Long chatId, @Param("limit") int limit);
+}
@@ -3,9 +3,14 @@ package com.example.chat.repository;
 import com.example.chat.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     // Allows you to log in users by searching their username
     Optional<User> findByUsername(String username);
+
+    // One query for a whole member list; names that don't exist are simply missing
+    List<User> findByUsernameIn(Collection<String> usernames);
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package com.example.chat.service;
+
+import com.example.chat.model.InboxEntry;
+import com.example.chat.model.Message;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * New messages and chat-list changes pushed over /chat, so clients can update their dashboard
+ * without polling /api/chats/user/{userId}.
+ * New messages need no extra chat-list event: the "message" frame already carries the preview.
+ */
+@Service
+public class ChatEvents {
+
+    public static final String CHAT_CREATED = "chat-created";
+    public static final String CHAT_DELETED = "chat-deleted";
+    public static final String MESSAGE = "message";
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final ChatRoutingIndex routingIndex;
+    private final SessionOutbox sessionOutbox;
+    private final ChatMetrics metrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public ChatEvents(ChatRoutingIndex routingIndex, SessionOutbox sessionOutbox, ChatMetrics metrics) {
+        this.routingIndex = routingIndex;
+        this.sessionOutbox = sessionOutbox;
+        this.metrics = metrics;
+    }
+
+    // Only the sessions of THIS chat's online members. Sends are queued per session,
+    // so a slow client never holds up the others. Called by ChatSequencer, in seq order per chat.
+    public void messageSent(Message message) {
+        long started = System.nanoTime();
+        Collection<WebSocketSession> sessions = routingIndex.sessionsForChat(message.getChat().getId());
+        sessionOutbox.sendAll(sessions, new TextMessage(messageJson(message)));
+        metrics.recordFanOut(System.nanoTime() - started, sessions.size());
+    }
+
+    // The client's 'onText' listener parses chatId and author from it.
+    // sentAt and authorId let clients update their chat list (preview, unread, order) from this frame.
+    // The id and the chat's seq are only known once the message is saved,
+    // so they are missing with chat.persistence.durability=after-enqueue.
+    public String messageJson(Message message) {
+        Map<String, Object> responseData = new LinkedHashMap<>();
+        responseData.put("type", MESSAGE);
+        if (message.getId() != null) {
+            responseData.put("id", message.getId());
+        }
+        if (message.getSeq() != null) {
+            responseData.put("seq", message.getSeq());
+        }
+        responseData.put("chatId", message.getChat().getId());
+        responseData.put("authorId", message.getAuthor().getId());
+        responseData.put("author", message.getAuthor().getUsername());
+        responseData.put("content", message.getContent());
+        responseData.put("time", message.getSentAt().format(TIME_FORMAT));
+        responseData.put("sentAt", message.getSentAt().toString());
+        return objectMapper.writeValueAsString(responseData);
+    }
+
+    // Each member gets the chat under their own display name
+    public void chatCreated(List<InboxEntry> entries) {
+        for (InboxEntry entry : entries) {
+            String json = objectMapper.writeValueAsString(Map.of(
+                    "type", CHAT_CREATED,
+                    "chatId", entry.getChatId(),
+                    "chatName", entry.getDisplayName()
+            ));
+            sessionOutbox.sendAll(routingIndex.sessionsForUser(entry.getUserId()), new TextMessage(json));
+        }
+    }
+
+    // Call before the chat is removed from the routing index
+    public void chatDeleted(Long chatId) {
+        String json = objectMapper.writeValueAsString(Map.of(
+                "type", CHAT_DELETED,
+                "chatId", chatId
+        ));
+        sessionOutbox.sendAll(routingIndex.sessionsForChat(chatId), new TextMessage(json));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the message path, scraped from /actuator/prometheus.
+ *
+ * Every meter is built once here, so recording is a lookup-free call on the hot path.
+ * Timers and summaries publish fixed histogram buckets (bounded by the expected min/max)
+ * instead of computing percentiles in the server; p95/p99 come from histogram_quantile() on the scrape side.
+ * Request latency of the REST endpoints is the standard http.server.requests timer.
+ */
+@Service
+public class ChatMetrics {
+
+    private final Timer parseTimer;
+    private final Timer persistTimer;
+    private final Timer fanOutTimer;
+    private final DistributionSummary recipients;
+    private final Counter saveFailures;
+    private final DistributionSummary chatListRows;
+    private final DistributionSummary historyRows;
+    private final Counter presenceFrames;
+    private final Counter typingFrames;
+    private final Counter typingDropped;
+
+    public ChatMetrics(MeterRegistry registry,
+                       ChatRoutingIndex routingIndex,
+                       SessionOutbox sessionOutbox,
+                       ObjectProvider<MessageWriter> messageWriter) {
+        this.parseTimer = timer(registry, "chat.message.parse",
+                "Decoding an inbound frame and resolving its author and chat", Duration.ofMillis(10));
+        this.persistTimer = timer(registry, "chat.message.persist",
+                "From handing a message to the writer until it is acked", Duration.ofSeconds(5));
+        this.fanOutTimer = timer(registry, "chat.message.fanout",
+                "Queueing one message for every online member session", Duration.ofMillis(100));
+        this.recipients = DistributionSummary.builder("chat.message.recipients")
+                .description("Sessions a message was queued for")
+                .baseUnit("sessions")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(10_000.0)
+                .register(registry);
+        this.saveFailures = Counter.builder("chat.message.save.failures")
+                .description("Inbound messages answered with a save error")
+                .register(registry);
+        this.chatListRows = rows(registry, "chat.list.rows", "Chats returned by GET /api/chats/user/{userId}");
+        this.historyRows = rows(registry, "chat.history.rows", "Messages returned by the history endpoints");
+        this.presenceFrames = Counter.builder("chat.presence.frames")
+                .description("Presence frames queued, one per recipient session")
+                .register(registry);
+        this.typingFrames = Counter.builder("chat.typing.frames")
+                .description("Typing frames queued, one per recipient session")
+                .register(registry);
+        this.typingDropped = Counter.builder("chat.typing.dropped")
+                .description("Inbound typing events over the per-user rate limit")
+                .register(registry);
+
+        Gauge.builder("chat.sessions", routingIndex, ChatRoutingIndex::sessionCount)
+                .description("Open /chat WebSocket sessions")
+                .register(registry);
+        Gauge.builder("chat.outbound.queued", sessionOutbox, SessionOutbox::totalDepth)
+                .description("Frames waiting in the per-session outbound queues")
+                .register(registry);
+        // Looked up on scrape: the writer saves through ChatSequencer, which sends through ChatEvents, which records here
+        Gauge.builder("chat.persistence.queued", () -> messageWriter.getObject().queueDepth())
+                .description("Messages waiting for the write-behind writer")
+                .register(registry);
+    }
+
+    public void recordParse(long nanos) {
+        parseTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPersist(long nanos, boolean saved) {
+        persistTimer.record(nanos, TimeUnit.NANOSECONDS);
+        if (!saved) saveFailures.increment();
+    }
+
+    public void recordFanOut(long nanos, int sessions) {
+        fanOutTimer.record(nanos, TimeUnit.NANOSECONDS);
+        recipients.record(sessions);
+    }
+
+    public void recordChatList(int rows) {
+        chatListRows.record(rows);
+    }
+
+    public void recordHistory(int rows) {
+        historyRows.record(rows);
+    }
+
+    public void recordPresenceFrames(int sessions) {
+        presenceFrames.increment(sessions);
+    }
+
+    public void recordTypingFrames(int sessions) {
+        typingFrames.increment(sessions);
+    }
+
+    public void recordTypingDropped() {
+        typingDropped.increment();
+    }
+
+    private static Timer timer(MeterRegistry registry, String name, String description, Duration max) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(max)
+                .register(registry);
+    }
+
+    private static DistributionSummary rows(MeterRegistry registry, String name, String description) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("rows")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(10_000.0)
+                .register(registry);
+    }
+}
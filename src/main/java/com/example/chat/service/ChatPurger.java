@@ -0,0 +1,159 @@
+package com.example.chat.service;
+
+import com.example.chat.repository.ChatMemberRepository;
+import com.example.chat.repository.ChatRepository;
+import com.example.chat.store.MessageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chat deletion in two steps. {@link #tombstone} runs in the request: it marks the chat deleted and drops
+ * its memberships and chat list rows, all bounded by the member count. The messages and search terms,
+ * which can be millions of rows, are removed afterwards by {@link #purgeDeletedChats}, one chunk of
+ * chat.purge.batch-size rows per transaction with chat.purge.pause-ms in between, so live traffic keeps
+ * getting connections and locks. The tombstones are in the chats table, so a restart picks up where it stopped.
+ */
+@Service
+public class ChatPurger {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatPurger.class);
+    // Progress is logged every this many chunks of a chat
+    private static final int LOG_EVERY_CHUNKS = 100;
+
+    private final ChatRepository chatRepository;
+    private final ChatMemberRepository chatMemberRepository;
+    private final InboxService inboxService;
+    private final MessageSearchService searchService;
+    private final MessageStore messageStore;
+    private final ChatSequencer sequencer;
+    private final int batchSize;
+    private final long pauseMs;
+    // Key: Chat ID, only chats the job is working on right now
+    private final Map<Long, Progress> running = new ConcurrentHashMap<>();
+
+    public ChatPurger(ChatRepository chatRepository,
+                      ChatMemberRepository chatMemberRepository,
+                      InboxService inboxService,
+                      MessageSearchService searchService,
+                      MessageStore messageStore,
+                      ChatSequencer sequencer,
+                      @Value("${chat.purge.batch-size:1000}") int batchSize,
+                      @Value("${chat.purge.pause-ms:50}") long pauseMs) {
+        this.chatRepository = chatRepository;
+        this.chatMemberRepository = chatMemberRepository;
+        this.inboxService = inboxService;
+        this.searchService = searchService;
+        this.messageStore = messageStore;
+        this.sequencer = sequencer;
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseMs = Math.max(0, pauseMs);
+    }
+
+    // Returns false when there is no such chat or it was deleted already
+    @Transactional
+    public boolean tombstone(Long chatId) {
+        // 1. Hide the chat from lookups (EntityCache, the archiver) and from new messages
+        if (chatRepository.markDeleted(chatId, LocalDateTime.now()) == 0) return false;
+
+        // 2. It leaves everyone's chat list and nobody is a member anymore (one statement each)
+        inboxService.chatDeleted(chatId);
+        chatMemberRepository.deleteByChat(chatId);
+        return true;
+    }
+
+    @Scheduled(initialDelayString = "${chat.purge.initial-delay-ms:10000}",
+               fixedDelayString = "${chat.purge.interval-ms:10000}")
+    public void purgeDeletedChats() {
+        for (Long chatId : chatRepository.findDeletedIds()) {
+            try {
+                if (!purge(chatId)) return; // Interrupted, the server is shutting down
+            } catch (RuntimeException e) {
+                log.error("Purging chat {} failed, will retry on the next run", chatId, e);
+            } finally {
+                running.remove(chatId);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        List<Map<String, Object>> chats = new ArrayList<>();
+        running.forEach((chatId, progress) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("chatId", chatId);
+            row.put("startedAt", progress.startedAt);
+            row.put("messagesPurged", progress.messages);
+            row.put("termsPurged", progress.terms);
+            row.put("chunks", progress.chunks);
+            chats.add(row);
+        });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingChats", chatRepository.findDeletedIds().size());
+        stats.put("batchSize", batchSize);
+        stats.put("pauseMs", pauseMs);
+        stats.put("running", chats);
+        return stats;
+    }
+
+    private boolean purge(Long chatId) {
+        Progress progress = new Progress();
+        running.put(chatId, progress);
+
+        // 1. Search terms first, so no search hit points at a message that is already gone
+        int removed;
+        while ((removed = searchService.purgeChat(chatId, batchSize)) > 0) {
+            progress.terms += removed;
+            if (!chunkDone(chatId, progress)) return false;
+        }
+
+        // 2. Messages (and, with the jpa engine, their archive segments once the table rows are gone)
+        while ((removed = messageStore.purgeChat(chatId, batchSize)) > 0) {
+            progress.messages += removed;
+            if (!chunkDone(chatId, progress)) return false;
+        }
+
+        // 3. Nothing references the chat anymore
+        chatRepository.deleteById(chatId);
+        sequencer.forget(Set.of(chatId));
+        log.info("Purged deleted chat {}: {} messages, {} search terms in {} chunks",
+                chatId, progress.messages, progress.terms, progress.chunks);
+        return true;
+    }
+
+    // Logs progress now and then and gives live traffic a turn. Returns false if interrupted.
+    private boolean chunkDone(Long chatId, Progress progress) {
+        progress.chunks++;
+        if (progress.chunks % LOG_EVERY_CHUNKS == 0) {
+            log.info("Purging deleted chat {}: {} messages, {} search terms so far",
+                    chatId, progress.messages, progress.terms);
+        }
+        if (pauseMs == 0) return true;
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Written by the scheduler thread only, read by stats()
+    private static final class Progress {
+        final LocalDateTime startedAt = LocalDateTime.now();
+        volatile long messages;
+        volatile long terms;
+        volatile int chunks;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.chat.service;
+
+import com.example.chat.model.ChatMember;
+import com.example.chat.repository.ChatMemberRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory routing table for the /chat WebSocket.
+ * Keeps chatId -> live sessions so a broadcast only touches the sessions of the chat's
+ * members, without asking the database who is in the chat on every message.
+ * Only users with at least one open session are tracked.
+ * A user's chats are queried before the lock is taken, so a slow query delays only that
+ * connect; membership changes made meanwhile are noticed through a counter and the query is repeated.
+ */
+@Service
+public class ChatRoutingIndex {
+
+    private final ChatMemberRepository chatMemberRepository;
+
+    // Key: WebSocketSession, Value: User ID (to know who is who)
+    private final Map<WebSocketSession, Long> userBySession = new ConcurrentHashMap<>();
+    // Key: User ID, Value: open sessions of that user (one per logged-in client)
+    private final Map<Long, Set<WebSocketSession>> sessionsByUser = new ConcurrentHashMap<>();
+    // Key: User ID, Value: chats of that user (loaded once when the user comes online)
+    private final Map<Long, Set<Long>> chatsByUser = new ConcurrentHashMap<>();
+    // Key: Chat ID, Value: open sessions of the chat's online members
+    private final Map<Long, Set<WebSocketSession>> sessionsByChat = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Bumped on every membership change, guarded by the lock
+    private long membershipVersion = 0;
+
+    public ChatRoutingIndex(ChatMemberRepository chatMemberRepository) {
+        this.chatMemberRepository = chatMemberRepository;
+    }
+
+    // Binds a session to a user. Cheap when the session is already bound to the same user,
+    // so it is safe to call for every inbound frame. Returns true if the session was not bound to them yet.
+    public boolean register(WebSocketSession session, Long userId) {
+        if (userId.equals(userBySession.get(session))) return false;
+
+        Set<Long> loaded = null;
+        long loadedAt = -1;
+        while (true) {
+            lock.lock();
+            try {
+                Long previous = userBySession.get(session);
+                if (userId.equals(previous)) return false;
+
+                Set<Long> chats = chatsByUser.get(userId);
+                if (chats == null && loaded != null && loadedAt == membershipVersion) {
+                    chats = loaded;
+                    chatsByUser.put(userId, chats);
+                }
+                if (chats != null) {
+                    if (previous != null) removeSession(session, previous); // Same socket, user relogged
+                    bind(session, userId, chats);
+                    return true;
+                }
+                loadedAt = membershipVersion;
+            } finally {
+                lock.unlock();
+            }
+
+            // Not online yet: query outside the lock, then check nothing changed meanwhile
+            loaded = ConcurrentHashMap.newKeySet();
+            for (ChatMember member : chatMemberRepository.findByUserId(userId)) {
+                loaded.add(member.getChatId());
+            }
+        }
+    }
+
+    public void unregister(WebSocketSession session) {
+        lock.lock();
+        try {
+            Long userId = userBySession.get(session);
+            if (userId != null) removeSession(session, userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called after a ChatMember row is saved
+    public void addMember(Long chatId, Long userId) {
+        lock.lock();
+        try {
+            membershipVersion++;
+            Set<Long> chats = chatsByUser.get(userId);
+            if (chats == null) return; // Offline, their chats get loaded on connect
+
+            chats.add(chatId);
+            Set<WebSocketSession> sessions = sessionsByUser.getOrDefault(userId, Set.of());
+            if (!sessions.isEmpty()) {
+                sessionsByChat.computeIfAbsent(chatId, id -> ConcurrentHashMap.newKeySet()).addAll(sessions);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called when a chat is deleted
+    public void removeChat(Long chatId) {
+        lock.lock();
+        try {
+            membershipVersion++;
+            sessionsByChat.remove(chatId);
+            for (Set<Long> chats : chatsByUser.values()) {
+                chats.remove(chatId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Collection<WebSocketSession> sessionsForChat(Long chatId) {
+        return sessionsByChat.getOrDefault(chatId, Set.of());
+    }
+
+    public Collection<WebSocketSession> sessionsForUser(Long userId) {
+        return sessionsByUser.getOrDefault(userId, Set.of());
+    }
+
+    // Only known for users with an open session, empty for everyone else
+    public Set<Long> chatsOf(Long userId) {
+        return chatsByUser.getOrDefault(userId, Set.of());
+    }
+
+    // Only known for users with an open session
+    public boolean isMember(Long userId, Long chatId) {
+        return chatsByUser.getOrDefault(userId, Set.of()).contains(chatId);
+    }
+
+    public Long userOf(WebSocketSession session) {
+        return userBySession.get(session);
+    }
+
+    public int sessionCount() {
+        return userBySession.size();
+    }
+
+    // Caller must hold the lock
+    private void bind(WebSocketSession session, Long userId, Set<Long> chats) {
+        userBySession.put(session, userId);
+        sessionsByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(session);
+        for (Long chatId : chats) {
+            sessionsByChat.computeIfAbsent(chatId, id -> ConcurrentHashMap.newKeySet()).add(session);
+        }
+    }
+
+    // Caller must hold the lock
+    private void removeSession(WebSocketSession session, Long userId) {
+        userBySession.remove(session);
+
+        Set<Long> chats = chatsByUser.getOrDefault(userId, Set.of());
+        for (Long chatId : chats) {
+            Set<WebSocketSession> chatSessions = sessionsByChat.get(chatId);
+            if (chatSessions == null) continue;
+            chatSessions.remove(session);
+            if (chatSessions.isEmpty()) sessionsByChat.remove(chatId);
+        }
+
+        Set<WebSocketSession> userSessions = sessionsByUser.get(userId);
+        if (userSessions != null) {
+            userSessions.remove(session);
+            if (userSessions.isEmpty()) {
+                // Last client of this user went away, stop tracking their chats
+                sessionsByUser.remove(userId);
+                chatsByUser.remove(userId);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.chat.service;
+
+import com.example.chat.model.Message;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.store.MessageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Hands out per-chat sequence numbers: every stored message gets the next seq of its chat (1, 2, 3...),
+ * so a reconnecting client can say "I've seen up to N" and get exactly what came after.
+ *
+ * Counters are kept in memory and seeded from the store the first time a chat is written to.
+ * Messages are numbered and stored (given their id) under their chat's lock, so within a chat
+ * seq order is id order. When the storing transaction rolls back its seqs go back to the counter,
+ * unless a later message of the chat was numbered in the meantime: then they stay a gap.
+ * Either way no seq is ever handed out twice.
+ *
+ * The lock is not held for the commit. Numbered messages wait in their chat's queue until their transaction
+ * completes, and leave it in seq order: a committed message is handed to {@link ChatEvents} only after every
+ * earlier one of the chat was committed (and sent) or rolled back. So whoever saves a message, over the
+ * WebSocket or REST, one chat's messages go out in seq order, and a client that has seen seq N has every
+ * committed message below it.
+ *
+ * Chats are guarded by a fixed set of lock stripes (ReentrantLock, see ChatRoutingIndex for why).
+ */
+@Service
+public class ChatSequencer {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatSequencer.class);
+    private static final int STRIPES = 64;
+
+    private final MessageStore messageStore;
+    private final MessageRepository messageRepository;
+    private final ChatEvents chatEvents;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    // Key: Chat ID, Value: last seq handed out
+    private final Map<Long, Long> lastSeqs = new ConcurrentHashMap<>();
+    // Key: Chat ID, Value: numbered messages not released yet, in seq order. Guarded by the chat's stripe.
+    private final Map<Long, ArrayDeque<Pending>> pending = new ConcurrentHashMap<>();
+
+    public ChatSequencer(MessageStore messageStore, MessageRepository messageRepository, ChatEvents chatEvents) {
+        this.messageStore = messageStore;
+        this.messageRepository = messageRepository;
+        this.chatEvents = chatEvents;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public List<Message> append(List<Message> messages, Function<List<Message>, List<Message>> storeAction) {
+        return append(messages, true, storeAction);
+    }
+
+    /**
+     * Numbers the messages (in list order) and stores them with storeAction while their chats are held.
+     * Call inside the transaction that stores them: once it commits they are sent to the chats' members
+     * (unless broadcast is false, the caller sent them already), if it rolls back their seqs are given back.
+     */
+    public List<Message> append(List<Message> messages, boolean broadcast,
+                                Function<List<Message>, List<Message>> storeAction) {
+        // Always in stripe order, so two batches sharing chats can't deadlock
+        TreeSet<Integer> held = new TreeSet<>();
+        for (Message message : messages) {
+            held.add(stripeIndex(message.getChat().getId()));
+        }
+        List<Pending> numbered = new ArrayList<>(messages.size());
+        held.forEach(i -> stripes[i].lock());
+        try {
+            for (Message message : messages) {
+                numbered.add(number(message, broadcast));
+            }
+            List<Message> stored;
+            try {
+                stored = storeAction.apply(messages);
+            } catch (RuntimeException e) {
+                complete(numbered, false);
+                throw e;
+            }
+            for (Pending p : numbered) {
+                pending.computeIfAbsent(p.chatId, id -> new ArrayDeque<>()).add(p);
+            }
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                complete(numbered, true);
+                return stored;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    complete(numbered, status == STATUS_COMMITTED);
+                }
+            });
+            return stored;
+        } finally {
+            held.descendingSet().forEach(i -> stripes[i].unlock());
+        }
+    }
+
+    // Caller holds the chat's stripe
+    private Pending number(Message message, boolean broadcast) {
+        Long chatId = message.getChat().getId();
+        Long last = lastSeqs.get(chatId);
+        long seq = (last != null ? last : messageStore.lastSeq(chatId)) + 1;
+        message.setSeq(seq);
+        lastSeqs.put(chatId, seq);
+        return new Pending(chatId, message, broadcast);
+    }
+
+    // Marks the messages done and releases every chat's queue as far as it is done, in seq order.
+    // Failed ones give their seqs back, but only if nothing was numbered after them,
+    // otherwise a seq already out there would be handed out again.
+    private void complete(List<Pending> done, boolean committed) {
+        // Newest first, so a failed batch rewinds its chat's counter step by step
+        for (Pending p : done.reversed()) {
+            inChatOrder(p.chatId, () -> {
+                p.done = true;
+                p.committed = committed;
+                if (!committed) giveBack(p);
+                release(p.chatId);
+            });
+        }
+    }
+
+    private void giveBack(Pending p) {
+        long seq = p.message.getSeq();
+        lastSeqs.computeIfPresent(p.chatId, (id, last) -> last == seq ? seq - 1 : last);
+    }
+
+    // Caller holds the chat's stripe: only the hand-off to the outboxes happens under it, the sends don't
+    private void release(Long chatId) {
+        ArrayDeque<Pending> queue = pending.get(chatId);
+        if (queue == null) return;
+        while (!queue.isEmpty() && queue.peek().done) {
+            Pending p = queue.poll();
+            if (!p.committed || !p.broadcast) continue;
+            try {
+                chatEvents.messageSent(p.message);
+            } catch (RuntimeException e) {
+                log.error("Failed to send message {} of chat {}", p.message.getId(), chatId, e);
+            }
+        }
+        if (queue.isEmpty()) pending.remove(chatId);
+    }
+
+    // The chat is gone, its counter with it
+    public void forget(Set<Long> chatIds) {
+        for (Long chatId : chatIds) {
+            inChatOrder(chatId, () -> lastSeqs.remove(chatId));
+        }
+    }
+
+    /**
+     * Numbers up to batchSize rows written before messages had a seq, oldest first,
+     * continuing after whatever their chat already has. Returns how many were numbered.
+     */
+    @Transactional
+    public int sequenceUnnumbered(int batchSize) {
+        List<Message> batch = messageRepository.findUnsequenced(Limit.of(batchSize));
+        Map<Long, Long> next = new HashMap<>();
+        for (Message message : batch) {
+            Long chatId = message.getChat().getId();
+            long seq = next.computeIfAbsent(chatId, id -> {
+                Long max = messageRepository.findMaxSeq(id);
+                return max == null ? 0L : max;
+            }) + 1;
+            message.setSeq(seq);
+            next.put(chatId, seq);
+        }
+        return batch.size();
+    }
+
+    private void inChatOrder(Long chatId, Runnable action) {
+        ReentrantLock lock = stripe(chatId);
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock stripe(Long chatId) {
+        return stripes[stripeIndex(chatId)];
+    }
+
+    private static int stripeIndex(Long chatId) {
+        return Math.floorMod(chatId.hashCode(), STRIPES);
+    }
+
+    private static final class Pending {
+        final Long chatId;
+        final Message message;
+        final boolean broadcast;
+        // Set once the transaction completed, under the chat's stripe
+        boolean done;
+        boolean committed;
+
+        Pending(Long chatId, Message message, boolean broadcast) {
+            this.chatId = chatId;
+            this.message = message;
+            this.broadcast = broadcast;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.chat.service;
+
+import com.example.chat.model.Chat;
+import com.example.chat.model.User;
+import com.example.chat.repository.ChatRepository;
+import com.example.chat.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached lookups of users and chats by id, for the message hot path.
+ * Returned entities are detached and shared, treat them as read-only.
+ */
+@Service
+public class EntityCache {
+
+    private final UserRepository userRepository;
+    private final ChatRepository chatRepository;
+    private final BoundedCache<Long, User> users;
+    private final BoundedCache<Long, Chat> chats;
+
+    public EntityCache(UserRepository userRepository,
+                       ChatRepository chatRepository,
+                       @Value("${chat.cache.max-entries:10000}") int maxEntries,
+                       @Value("${chat.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.chatRepository = chatRepository;
+        this.users = new BoundedCache<>(maxEntries, ttlSeconds, TimeUnit.SECONDS);
+        this.chats = new BoundedCache<>(maxEntries, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    public Optional<User> findUser(Long id) {
+        return users.get(id, userRepository::findById);
+    }
+
+    public Optional<Chat> findChat(Long id) {
+        return chats.get(id, chatRepository::findLiveById);
+    }
+
+    public void evictUser(Long id) {
+        users.invalidate(id);
+    }
+
+    public void evictChat(Long id) {
+        chats.invalidate(id);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", statsOf(users));
+        result.put("chats", statsOf(chats));
+        return result;
+    }
+
+    private Map<String, Object> statsOf(BoundedCache<?, ?> cache) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", cache.size());
+        map.put("hits", cache.hitCount());
+        map.put("misses", cache.missCount());
+        map.put("evictions", cache.evictionCount());
+        return map;
+    }
+}
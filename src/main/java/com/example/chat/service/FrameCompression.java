@@ -0,0 +1,82 @@
+package com.example.chat.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.zip.Deflater;
+
+/**
+ * Opt-in deflate compression of outbound /chat frames, for clients that cannot negotiate permessage-deflate
+ * (the JDK WebSocket client, so ChatClient). A client asks for it on connect (ws://host/chat?compress=deflate);
+ * frames of at least chat.websocket.compression.min-bytes then go out as binary frames holding the raw
+ * deflated UTF-8 JSON, smaller ones stay text frames.
+ *
+ * Every frame is compressed on its own, without a window shared across frames. That costs some ratio on
+ * small frames but keeps no per-session deflater (~256 KB each) and lets a broadcast be compressed once
+ * for all of its recipients (see SessionOutbox.sendAll).
+ */
+@Component
+public class FrameCompression {
+
+    private static final String SESSION_ATTRIBUTE = "chat.compress";
+
+    private final boolean enabled;
+    private final int minBytes;
+    private final int level;
+
+    public FrameCompression(@Value("${chat.websocket.compression.enabled:true}") boolean enabled,
+                            @Value("${chat.websocket.compression.min-bytes:512}") int minBytes,
+                            @Value("${chat.websocket.compression.level:1}") int level) {
+        this.enabled = enabled;
+        this.minBytes = Math.max(0, minBytes);
+        this.level = level;
+    }
+
+    // Called once the session is open, remembers whether the client asked for compressed frames
+    public void negotiate(WebSocketSession session) {
+        if (enabled && requested(session.getUri())) {
+            session.getAttributes().put(SESSION_ATTRIBUTE, Boolean.TRUE);
+        }
+    }
+
+    public boolean accepts(WebSocketSession session) {
+        return Boolean.TRUE.equals(session.getAttributes().get(SESSION_ATTRIBUTE));
+    }
+
+    // The frame as it goes to a session that accepts compression: deflated if it is big enough
+    public WebSocketMessage<?> compress(TextMessage message) {
+        if (message.getPayloadLength() < minBytes) return message;
+        return new BinaryMessage(deflate(message.asBytes(), level));
+    }
+
+    // Raw deflate (no zlib header), what the client inflates with new Inflater(true)
+    public static byte[] deflate(byte[] input, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] chunk = new byte[Math.max(64, Math.min(input.length, 8192))];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean requested(URI uri) {
+        if (uri == null || uri.getQuery() == null) return false;
+        for (String param : uri.getQuery().split("&")) {
+            if (param.equals("compress=deflate")) return true;
+        }
+        return false;
+    }
+}
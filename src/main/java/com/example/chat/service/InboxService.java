@@ -0,0 +1,201 @@
+package com.example.chat.service;
+
+import com.example.chat.model.Chat;
+import com.example.chat.model.ChatMember;
+import com.example.chat.model.ChatPreview;
+import com.example.chat.model.InboxEntry;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.repository.ChatMemberRepository;
+import com.example.chat.repository.ChatRepository;
+import com.example.chat.repository.InboxRepository;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.store.MessageStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains the per-user chat list (inbox_entries) at write time,
+ * so reading it is a single indexed query instead of several queries per chat.
+ */
+@Service
+public class InboxService {
+
+    public static final String PRIVATE_CHAT_NAME = "Private Chat";
+
+    private final InboxRepository inboxRepository;
+    private final ChatMemberRepository chatMemberRepository;
+    private final ChatRepository chatRepository;
+    private final UserRepository userRepository;
+    private final MessageStore messageStore;
+    private final VersionStamps versionStamps;
+    // Key: Chat ID, Value: its members' user IDs (members never change after the chat is created)
+    private final BoundedCache<Long, List<Long>> membersByChat;
+
+    public InboxService(InboxRepository inboxRepository,
+                        ChatMemberRepository chatMemberRepository,
+                        ChatRepository chatRepository,
+                        UserRepository userRepository,
+                        MessageStore messageStore,
+                        VersionStamps versionStamps,
+                        @Value("${chat.cache.max-entries:10000}") int maxEntries,
+                        @Value("${chat.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.inboxRepository = inboxRepository;
+        this.chatMemberRepository = chatMemberRepository;
+        this.chatRepository = chatRepository;
+        this.userRepository = userRepository;
+        this.messageStore = messageStore;
+        this.versionStamps = versionStamps;
+        this.membersByChat = new BoundedCache<>(maxEntries, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    public static boolean isPrivate(Chat chat) {
+        String name = chat.getChatName();
+        return name == null || name.isEmpty() || name.equals(PRIVATE_CHAT_NAME);
+    }
+
+    public List<ChatPreview> chatList(Long userId) {
+        return inboxRepository.findChatList(userId);
+    }
+
+    // Creates one row per member. Private chats are named after the other person.
+    @Transactional
+    public List<InboxEntry> chatCreated(Chat chat, List<User> members) {
+        List<InboxEntry> entries = new ArrayList<>(members.size());
+        for (User member : members) {
+            entries.add(new InboxEntry(member.getId(), chat.getId(), displayNameFor(chat, member.getId(), members)));
+        }
+        versionStamps.inboxesChanged(members.stream().map(User::getId).toList());
+        return inboxRepository.saveAll(entries);
+    }
+
+    // Runs inside the transaction that saves the messages. One UPDATE per chat in the batch, plus one per
+    // author who is not the chat's last one (they have read everything up to their own last message).
+    // Also moves the version stamps of the chats' histories and of their members' chat lists.
+    @Transactional
+    public void recordMessages(List<Message> messages) {
+        // Key: Chat ID, Value: its messages of this batch, in order
+        Map<Long, List<Message>> byChat = new LinkedHashMap<>();
+        for (Message m : messages) {
+            byChat.computeIfAbsent(m.getChat().getId(), id -> new ArrayList<>()).add(m);
+        }
+
+        for (Map.Entry<Long, List<Message>> chat : byChat.entrySet()) {
+            List<Message> chatMessages = chat.getValue();
+            Message last = chatMessages.get(chatMessages.size() - 1);
+            inboxRepository.recordMessages(
+                    chat.getKey(),
+                    last.getAuthor().getId(),
+                    last.getAuthor().getUsername(),
+                    InboxEntry.preview(last.getContent()),
+                    last.getSentAt(),
+                    chatMessages.size());
+
+            // Walking back from the end: messages by others after each author's last one
+            Map<Long, Integer> unreadOfAuthors = new LinkedHashMap<>();
+            for (int i = chatMessages.size() - 1; i >= 0; i--) {
+                unreadOfAuthors.putIfAbsent(chatMessages.get(i).getAuthor().getId(), chatMessages.size() - 1 - i);
+            }
+            unreadOfAuthors.remove(last.getAuthor().getId());
+            unreadOfAuthors.forEach((authorId, unread) -> inboxRepository.setUnread(chat.getKey(), authorId, unread));
+        }
+
+        for (Long chatId : byChat.keySet()) {
+            versionStamps.chatChanged(chatId);
+            versionStamps.inboxesChanged(memberIds(chatId));
+        }
+    }
+
+    @Transactional
+    public void markRead(Long chatId, Long userId) {
+        inboxRepository.markRead(chatId, userId);
+        versionStamps.inboxesChanged(List.of(userId));
+    }
+
+    // Call before the chat's members are removed, they are the ones whose list changes
+    @Transactional
+    public void chatDeleted(Long chatId) {
+        versionStamps.inboxesChanged(memberIds(chatId));
+        versionStamps.chatChanged(chatId);
+        inboxRepository.deleteByChat(chatId);
+        membersByChat.invalidate(chatId);
+    }
+
+    private List<Long> memberIds(Long chatId) {
+        return membersByChat.get(chatId, id -> Optional.of(chatMemberRepository.findUserIdsByChat(id))).orElseThrow();
+    }
+
+    // Builds the inbox from existing chats and messages, for databases created before inbox_entries existed.
+    // Chats, members and users are loaded once; the last message is looked up once per chat.
+    @Transactional
+    public int rebuildIfEmpty() {
+        if (inboxRepository.count() > 0) return 0;
+
+        Map<Long, Chat> chats = new HashMap<>();
+        for (Chat chat : chatRepository.findAll()) {
+            chats.put(chat.getId(), chat);
+        }
+        // Key: Chat ID, Value: its memberships
+        Map<Long, List<ChatMember>> membersByChatId = new LinkedHashMap<>();
+        Set<Long> userIds = new HashSet<>();
+        for (ChatMember member : chatMemberRepository.findAll()) {
+            if (!chats.containsKey(member.getChatId())) continue;
+            membersByChatId.computeIfAbsent(member.getChatId(), id -> new ArrayList<>()).add(member);
+            userIds.add(member.getUserId());
+        }
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(userIds)) {
+            users.put(user.getId(), user);
+        }
+
+        List<InboxEntry> entries = new ArrayList<>();
+        for (Map.Entry<Long, List<ChatMember>> chatMembers : membersByChatId.entrySet()) {
+            Chat chat = chats.get(chatMembers.getKey());
+            List<User> members = new ArrayList<>();
+            for (ChatMember m : chatMembers.getValue()) {
+                User user = users.get(m.getUserId());
+                if (user != null) members.add(user);
+            }
+            Optional<Message> last = messageStore.pageBefore(chat.getId(), Long.MAX_VALUE, 1).stream().findFirst();
+
+            for (ChatMember member : chatMembers.getValue()) {
+                InboxEntry entry = new InboxEntry(member.getUserId(), chat.getId(),
+                        displayNameFor(chat, member.getUserId(), members));
+                if (last.isPresent()) {
+                    Message msg = last.get();
+                    entry.setLastMessageAuthorId(msg.getAuthor().getId());
+                    entry.setLastMessageAuthor(msg.getAuthor().getUsername());
+                    entry.setLastMessagePreview(InboxEntry.preview(msg.getContent()));
+                    entry.setLastMessageAt(msg.getSentAt());
+
+                    boolean unread = !msg.getAuthor().getId().equals(member.getUserId())
+                            && (member.getLastWatched() == null || msg.getSentAt().isAfter(member.getLastWatched()));
+                    entry.setUnreadCount(unread ? 1 : 0);
+                }
+                entries.add(entry);
+            }
+        }
+
+        inboxRepository.saveAll(entries);
+        return entries.size();
+    }
+
+    private String displayNameFor(Chat chat, Long viewerId, List<User> members) {
+        if (!isPrivate(chat)) return chat.getChatName();
+        for (User m : members) {
+            if (!m.getId().equals(viewerId)) return m.getUsername();
+        }
+        return chat.getChatName();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.chat.service;
+
+import com.example.chat.model.ChatMemberId;
+import com.example.chat.model.Message;
+import com.example.chat.model.MessageTerm;
+import com.example.chat.repository.ChatMemberRepository;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.repository.MessageTermRepository;
+import com.example.chat.store.MessageStore;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over messages, backed by an inverted index (message_terms).
+ * Postings are written in the same transaction as the messages, so a message is
+ * searchable as soon as it is committed. A query matches messages containing all of
+ * its terms; hits are ranked by how often the terms occur, then by recency.
+ */
+@Service
+public class MessageSearchService {
+
+    // Terms shorter than this are too common to be worth indexing
+    private static final int MIN_TERM_LENGTH = 2;
+    // Longer queries are cut, each term is one more group in the HAVING
+    private static final int MAX_QUERY_TERMS = 8;
+
+    private final MessageTermRepository termRepository;
+    private final MessageRepository messageRepository;
+    private final ChatMemberRepository chatMemberRepository;
+    private final ChatRoutingIndex routingIndex;
+    private final MessageStore messageStore;
+
+    public MessageSearchService(MessageTermRepository termRepository,
+                                MessageRepository messageRepository,
+                                ChatMemberRepository chatMemberRepository,
+                                ChatRoutingIndex routingIndex,
+                                MessageStore messageStore) {
+        this.termRepository = termRepository;
+        this.messageRepository = messageRepository;
+        this.chatMemberRepository = chatMemberRepository;
+        this.routingIndex = routingIndex;
+        this.messageStore = messageStore;
+    }
+
+    // Lowercased runs of letters and digits, with how often each occurs
+    public static Map<String, Integer> tokenize(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        if (text == null) return terms;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TERM_LENGTH) {
+                    String term = lower.substring(start, start + Math.min(length, MessageTerm.MAX_TERM_LENGTH));
+                    terms.merge(term, 1, Integer::sum);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    // Runs inside the transaction that saves the messages
+    @Transactional
+    public void indexMessages(List<Message> messages) {
+        List<MessageTerm> postings = new ArrayList<>();
+        for (Message m : messages) {
+            for (Map.Entry<String, Integer> term : tokenize(m.getContent()).entrySet()) {
+                postings.add(new MessageTerm(term.getKey(), m.getId(), m.getChat().getId(), term.getValue()));
+            }
+        }
+        termRepository.saveAll(postings);
+    }
+
+    // Online users are answered from the routing index, everyone else from chat_members
+    public boolean isMember(Long userId, Long chatId) {
+        if (routingIndex.isMember(userId, chatId)) return true;
+        return chatMemberRepository.existsById(new ChatMemberId(chatId, userId));
+    }
+
+    // Callers check isMember first
+    public List<Message> searchChat(Long chatId, String query, int page, int size) {
+        List<String> terms = queryTerms(query);
+        if (terms.isEmpty()) return List.of();
+        return load(termRepository.searchChat(chatId, terms, terms.size(), PageRequest.of(page, size)));
+    }
+
+    // Only chats the user is a member of
+    public List<Message> searchUserChats(Long userId, String query, int page, int size) {
+        List<String> terms = queryTerms(query);
+        if (terms.isEmpty()) return List.of();
+        return load(termRepository.searchUserChats(userId, terms, terms.size(), PageRequest.of(page, size)));
+    }
+
+    // One chunk of a deleted chat's terms, returns how many rows went (0 once none are left)
+    @Transactional
+    public int purgeChat(Long chatId, int limit) {
+        return termRepository.deleteChunkByChat(chatId, limit);
+    }
+
+    // Where the backfill starts (exclusive). It walks down from the newest message, and messages saved from
+    // now on are indexed as they are written, so after a restart it carries on below the lowest indexed id.
+    public long backfillStart() {
+        Long maxId = messageRepository.findMaxId();
+        if (maxId == null) return 0;
+        Long minIndexed = termRepository.findMinMessageId();
+        return minIndexed == null ? maxId + 1 : Math.min(maxId + 1, minIndexed);
+    }
+
+    // Indexes up to batchSize messages with an id below beforeId, skipping any that already have postings.
+    // Returns the lowest id in the batch, or null when there was nothing left.
+    @Transactional
+    public Long indexBatchBefore(Long beforeId, int batchSize) {
+        List<Message> batch = messageRepository.findAllBefore(beforeId, Limit.of(batchSize));
+        if (batch.isEmpty()) return null;
+        Set<Long> indexed = new HashSet<>(termRepository.findIndexedMessageIds(batch.stream().map(Message::getId).toList()));
+        indexMessages(batch.stream().filter(m -> !indexed.contains(m.getId())).toList());
+        return batch.get(batch.size() - 1).getId();
+    }
+
+    private static List<String> queryTerms(String query) {
+        return tokenize(query).keySet().stream().limit(MAX_QUERY_TERMS).toList();
+    }
+
+    // Messages in the order of the ranked ids
+    private List<Message> load(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, Message> byId = messageStore.findByIds(ids).stream()
+                .collect(Collectors.toMap(Message::getId, Function.identity()));
+        List<Message> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Message m = byId.get(id);
+            if (m != null) result.add(m);
+        }
+        return result;
+    }
+}
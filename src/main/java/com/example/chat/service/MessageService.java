@@ -2,7 +2,9 @@ package com.example.chat.service;
 
 import com.example.chat.model.Message;
 import com.example.chat.repository.MessageRepository;
+import com.example.chat.store.MessageStore;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -10,13 +12,46 @@ import java.util.List;
 public class MessageService {
 
     private final MessageRepository repo;
+    private final MessageStore store;
+    private final InboxService inboxService;
+    private final MessageSearchService searchService;
+    private final ChatSequencer sequencer;
 
-    public MessageService(MessageRepository repo) {
+    public MessageService(MessageRepository repo, MessageStore store, InboxService inboxService,
+                          MessageSearchService searchService, ChatSequencer sequencer) {
         this.repo = repo;
+        this.store = store;
+        this.inboxService = inboxService;
+        this.searchService = searchService;
+        this.sequencer = sequencer;
     }
 
+    // With the segment engine only the inbox and search updates are transactional,
+    // the message itself is already in the log when they run.
+    // Once committed it is sent to the chat's online members (see ChatSequencer).
+    @Transactional
     public Message save(Message message) {
-        return repo.save(message);
+        return save(message, true);
+    }
+
+    @Transactional
+    public Message save(Message message, boolean broadcast) {
+        return saveAll(List.of(message), broadcast).get(0);
+    }
+
+    // One transaction for the whole batch, so the batch costs a single commit
+    @Transactional
+    public List<Message> saveAll(List<Message> messages) {
+        return saveAll(messages, true);
+    }
+
+    // broadcast = false for messages the caller has sent out already (write-behind with after-enqueue acks)
+    @Transactional
+    public List<Message> saveAll(List<Message> messages, boolean broadcast) {
+        List<Message> saved = sequencer.append(messages, broadcast, store::append);
+        inboxService.recordMessages(saved);
+        searchService.indexMessages(saved);
+        return saved;
     }
 
     public List<Message> findAll() {
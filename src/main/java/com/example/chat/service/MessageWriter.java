@@ -0,0 +1,206 @@
+package com.example.chat.service;
+
+import com.example.chat.model.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists chat messages coming from the WebSocket.
+ *
+ * In SYNC mode every message is saved in its own transaction on the caller's thread.
+ * In WRITE_BEHIND mode messages go onto a bounded queue and a single writer thread
+ * saves them in batches, one transaction (and one commit) per batch.
+ *
+ * The future returned by {@link #write(Message)} is the "ack".
+ * With AFTER_COMMIT it completes when the batch holding the message is committed, and the message is
+ * sent to the chat's members after that commit (see ChatSequencer).
+ * With AFTER_ENQUEUE it completes, and the message is sent, as soon as the message is queued.
+ */
+@Service
+public class MessageWriter {
+
+    public enum Mode { SYNC, WRITE_BEHIND }
+
+    public enum Durability { AFTER_COMMIT, AFTER_ENQUEUE }
+
+    private static final Logger log = LoggerFactory.getLogger(MessageWriter.class);
+
+    private final MessageService messageService;
+    private final ChatEvents chatEvents;
+    private final Mode mode;
+    private final Durability durability;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingMessage> queue;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public MessageWriter(MessageService messageService,
+                         ChatEvents chatEvents,
+                         @Value("${chat.persistence.mode:sync}") Mode mode,
+                         @Value("${chat.persistence.durability:after-commit}") Durability durability,
+                         @Value("${chat.persistence.batch-size:100}") int batchSize,
+                         @Value("${chat.persistence.linger-ms:5}") long lingerMs,
+                         @Value("${chat.persistence.queue-capacity:10000}") int queueCapacity) {
+        this.messageService = messageService;
+        this.chatEvents = chatEvents;
+        this.mode = mode;
+        this.durability = durability;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMs));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    @PostConstruct
+    void start() {
+        if (mode != Mode.WRITE_BEHIND) return;
+        running = true;
+        writerThread = new Thread(this::drainLoop, "message-writer");
+        writerThread.start();
+    }
+
+    // Stops taking new messages and commits everything still queued before the datasource goes away
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (writerThread == null) return;
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        if (writerThread.isAlive()) {
+            log.warn("Message writer did not finish flushing, {} messages left in queue", queue.size());
+            return;
+        }
+
+        // Messages enqueued while the writer was exiting
+        List<PendingMessage> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) flush(rest);
+    }
+
+    public CompletableFuture<Void> write(Message message) {
+        if (!running) {
+            // SYNC mode, or the writer is shutting down: save right here
+            try {
+                messageService.save(message);
+            } catch (RuntimeException e) {
+                log.error("Failed to persist a message", e);
+                return CompletableFuture.failedFuture(e);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        PendingMessage pending = new PendingMessage(message, new CompletableFuture<>());
+        try {
+            queue.put(pending); // Blocks when the queue is full, pushing back on the senders
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (durability == Durability.AFTER_ENQUEUE) {
+            // Sent here (most likely still without id and seq), so its save must not send it again
+            chatEvents.messageSent(message);
+            return CompletableFuture.completedFuture(null);
+        }
+        return pending.committed();
+    }
+
+    // True while messages go through the writer thread rather than being saved by the caller
+    public boolean isWriteBehind() {
+        return running;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private void drainLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // Take whatever is already waiting, then linger a little for stragglers
+                queue.drainTo(batch, batchSize - batch.size());
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize && running) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Don't lose what was already taken, the loop keeps draining the rest
+                running = false;
+                if (!batch.isEmpty()) flush(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message());
+        }
+
+        try {
+            messageService.saveAll(messages, sendsOnCommit());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                log.error("Failed to persist a message", e);
+                batch.get(0).committed().completeExceptionally(e);
+                return;
+            }
+            // One bad message must not cost the others theirs: save them one by one
+            log.warn("Failed to persist a batch of {} messages, retrying them one by one", batch.size(), e);
+            for (PendingMessage pending : batch) {
+                retry(pending);
+            }
+            return;
+        }
+
+        for (PendingMessage pending : batch) {
+            pending.committed().complete(null);
+        }
+    }
+
+    private void retry(PendingMessage pending) {
+        Message message = pending.message();
+        // Set by the rolled back batch, handed out again on this save
+        message.setId(null);
+        message.setSeq(null);
+        try {
+            messageService.save(message, sendsOnCommit());
+            pending.committed().complete(null);
+        } catch (RuntimeException e) {
+            log.error("Failed to persist a message", e);
+            pending.committed().completeExceptionally(e);
+        }
+    }
+
+    // AFTER_ENQUEUE messages went out when they were queued
+    private boolean sendsOnCommit() {
+        return durability == Durability.AFTER_COMMIT;
+    }
+
+    private record PendingMessage(Message message, CompletableFuture<Void> committed) {}
+}
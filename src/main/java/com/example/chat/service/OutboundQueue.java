@@ -0,0 +1,216 @@
+package com.example.chat.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded outbound buffer for one WebSocket session.
+ * Producers only append to the buffer; a task on the shared send executor
+ * does the actual (blocking) writes, one at a time, so a slow client only delays itself.
+ *
+ * A write that blocks holds its send thread until it returns, so the send time limit is enforced from
+ * outside: SessionOutbox's watchdog calls {@link #checkSendTime} and a stalled session is closed on the
+ * closer executor, which makes the blocked write fail and frees the send thread.
+ */
+public class OutboundQueue {
+
+    public enum OverflowPolicy {
+        // Drop the oldest queued frame to make room
+        DROP_OLDEST,
+        // Drop the oldest queued frame that has a coalesce key (state that a later frame restates), otherwise the oldest
+        COALESCE,
+        // Give up on the client and close the session
+        DISCONNECT
+    }
+
+    // Frames sent per executor turn before yielding to other sessions
+    private static final int MAX_FRAMES_PER_TURN = 64;
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final Executor closer;
+    private final int capacity;
+    private final long sendTimeLimitNanos;
+    private final OverflowPolicy policy;
+
+    private final ArrayDeque<Outbound> buffer = new ArrayDeque<>();
+    private boolean draining = false; // Guarded by this
+    private volatile boolean closed = false;
+    private volatile long sendStartedAt = 0;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // closer must not be the send executor: its threads may all be stuck in a write to a stalled client
+    public OutboundQueue(WebSocketSession session, Executor executor, Executor closer, int capacity,
+                         long sendTimeLimitNanos, OverflowPolicy policy) {
+        this.session = session;
+        this.executor = executor;
+        this.closer = closer;
+        this.capacity = Math.max(1, capacity);
+        this.sendTimeLimitNanos = sendTimeLimitNanos;
+        this.policy = policy;
+    }
+
+    // coalesceKey may be null; a frame with a key replaces a queued frame with the same key, whatever the policy
+    public void enqueue(WebSocketMessage<?> message, String coalesceKey) {
+        if (closed) return;
+        if (checkSendTime(System.nanoTime())) return;
+
+        boolean overflow = false;
+        boolean schedule = false;
+        synchronized (this) {
+            if (coalesceKey != null && replaceQueued(coalesceKey, message)) {
+                return;
+            }
+            if (buffer.size() >= capacity) {
+                if (policy == OverflowPolicy.DISCONNECT) {
+                    overflow = true;
+                } else {
+                    if (policy != OverflowPolicy.COALESCE || !removeOldestKeyed()) {
+                        buffer.pollFirst();
+                    }
+                    dropped.incrementAndGet();
+                }
+            }
+            if (!overflow) {
+                buffer.addLast(new Outbound(message, coalesceKey));
+                if (!draining) {
+                    draining = true;
+                    schedule = true;
+                }
+            }
+        }
+
+        if (overflow) {
+            disconnect("outbound buffer full");
+        } else if (schedule) {
+            executor.execute(this::drain);
+        }
+    }
+
+    public synchronized int depth() {
+        return buffer.size();
+    }
+
+    public long sentCount() {
+        return sent.get();
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    public WebSocketSession session() {
+        return session;
+    }
+
+    // Closes the session if the write in progress has taken longer than the send time limit.
+    // Returns true if it did (or the queue was already closed).
+    public boolean checkSendTime(long now) {
+        if (closed) return true;
+        long started = sendStartedAt;
+        if (started == 0 || now - started <= sendTimeLimitNanos) return false;
+        disconnect("send time limit exceeded");
+        return true;
+    }
+
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            buffer.clear();
+        }
+    }
+
+    private boolean replaceQueued(String coalesceKey, WebSocketMessage<?> message) {
+        Iterator<Outbound> it = buffer.iterator();
+        while (it.hasNext()) {
+            Outbound queued = it.next();
+            if (Objects.equals(queued.coalesceKey(), coalesceKey)) {
+                queued.message = message;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean removeOldestKeyed() {
+        Iterator<Outbound> it = buffer.iterator();
+        while (it.hasNext()) {
+            if (it.next().coalesceKey() != null) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void drain() {
+        for (int i = 0; i < MAX_FRAMES_PER_TURN; i++) {
+            Outbound next;
+            synchronized (this) {
+                next = buffer.pollFirst();
+                if (next == null || closed) {
+                    draining = false;
+                    return;
+                }
+            }
+
+            sendStartedAt = System.nanoTime();
+            try {
+                session.sendMessage(next.message);
+                sent.incrementAndGet();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Send to session {} failed, closing it", session.getId(), e);
+                disconnect("send failed");
+                synchronized (this) {
+                    draining = false;
+                }
+                return;
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+        // Let other sessions have the thread, then continue
+        executor.execute(this::drain);
+    }
+
+    private void disconnect(String reason) {
+        if (closed) return;
+        close();
+        log.info("Closing slow WebSocket session {}: {}", session.getId(), reason);
+        closer.execute(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE.withReason(reason));
+            } catch (IOException e) {
+                log.debug("Could not close session {}", session.getId(), e);
+            }
+        });
+    }
+
+    private static final class Outbound {
+        private WebSocketMessage<?> message;
+        private final String coalesceKey;
+
+        private Outbound(WebSocketMessage<?> message, String coalesceKey) {
+            this.message = message;
+            this.coalesceKey = coalesceKey;
+        }
+
+        private String coalesceKey() {
+            return coalesceKey;
+        }
+    }
+}
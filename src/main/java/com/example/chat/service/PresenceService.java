@@ -0,0 +1,330 @@
+package com.example.chat.service;
+
+import com.example.chat.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Online/offline presence and "is typing" indicators over /chat.
+ *
+ * Nothing is sent when a state changes. Changes only mark the user (or the chat, for typing) dirty,
+ * and {@link #flush} sends what is different from the last flush every chat.presence.flush-interval-ms:
+ * <ul>
+ *   <li>{"type": "presence", "online": ["bob"], "offline": ["carol"]}, one frame per user who shares a chat
+ *       with someone whose state changed, holding all of those changes. A reconnect inside one interval
+ *       sends nothing. A new session first gets the full list, with "snapshot": true.</li>
+ *   <li>{"type": "typing", "chatId": 12, "users": ["bob"]}, to the chat's sessions when the set of typers
+ *       changed. Replaces the previous one still in a lagging session's queue (OutboundQueue coalesce key).</li>
+ * </ul>
+ * Who is online comes from ChatRoutingIndex: a user with at least one open session.
+ *
+ * Clients send {"type": "typing", "chatId": 12} while the user types. One such event per user and chat
+ * is accepted per chat.presence.typing.min-interval-ms, the rest are dropped; the user stops counting as
+ * typing chat.presence.typing.ttl-ms after the last accepted one, on {"type": "typing", "typing": false}
+ * or when their message arrives.
+ */
+@Service
+public class PresenceService {
+
+    public static final String PRESENCE = "presence";
+    public static final String TYPING = "typing";
+
+    private final ChatRoutingIndex routingIndex;
+    private final SessionOutbox sessionOutbox;
+    private final EntityCache entityCache;
+    private final ChatMetrics metrics;
+    private final boolean enabled;
+    private final long typingIntervalNanos;
+    private final long typingTtlNanos;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Key: User ID, Value: the user's chats when the change was seen (an offline user has none left in the index)
+    private final Map<Long, Set<Long>> dirtyUsers = new ConcurrentHashMap<>();
+    // Users everyone was last told are online. Only written by flush().
+    private final Set<Long> announced = ConcurrentHashMap.newKeySet();
+    // Sessions (and chats whose sessions) get the full presence list on the next flush
+    private final Set<WebSocketSession> needSnapshot = ConcurrentHashMap.newKeySet();
+    private final Set<Long> newChats = ConcurrentHashMap.newKeySet();
+
+    // Key: Chat ID, Value: (Key: User ID, Value: that user's typing state in the chat)
+    private final Map<Long, Map<Long, Typing>> typing = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyTypingChats = ConcurrentHashMap.newKeySet();
+    // Key: Chat ID, Value: typers the chat's sessions were last sent. Only written by flush().
+    private final Map<Long, Set<Long>> sentTypers = new ConcurrentHashMap<>();
+
+    private final AtomicLong presenceFrames = new AtomicLong();
+    private final AtomicLong typingFrames = new AtomicLong();
+    private final AtomicLong typingAccepted = new AtomicLong();
+    private final AtomicLong typingDropped = new AtomicLong();
+
+    public PresenceService(ChatRoutingIndex routingIndex,
+                           SessionOutbox sessionOutbox,
+                           EntityCache entityCache,
+                           ChatMetrics metrics,
+                           @Value("${chat.presence.enabled:true}") boolean enabled,
+                           @Value("${chat.presence.typing.min-interval-ms:2000}") long typingIntervalMs,
+                           @Value("${chat.presence.typing.ttl-ms:6000}") long typingTtlMs) {
+        this.routingIndex = routingIndex;
+        this.sessionOutbox = sessionOutbox;
+        this.entityCache = entityCache;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.typingIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, typingIntervalMs));
+        this.typingTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, typingTtlMs));
+    }
+
+    // Call after the session is registered in the routing index
+    public void sessionOpened(WebSocketSession session, Long userId) {
+        if (!enabled) return;
+        needSnapshot.add(session);
+        dirtyUsers.putIfAbsent(userId, Set.of());
+    }
+
+    // Call before the session is removed from the routing index, while the user's chats are still known
+    public void sessionClosing(WebSocketSession session) {
+        needSnapshot.remove(session);
+        Long userId = routingIndex.userOf(session);
+        if (!enabled || userId == null) return;
+        Set<Long> chats = Set.copyOf(routingIndex.chatsOf(userId));
+        dirtyUsers.merge(userId, chats, (a, b) -> {
+            Set<Long> union = new HashSet<>(a);
+            union.addAll(b);
+            return union;
+        });
+    }
+
+    // Call once the chat's members are in the routing index, so they learn about each other
+    public void chatCreated(Long chatId) {
+        if (enabled) newChats.add(chatId);
+    }
+
+    public void typing(Long userId, Long chatId, boolean typing) {
+        if (!enabled || !routingIndex.isMember(userId, chatId)) return;
+        if (!typing) {
+            stoppedTyping(userId, chatId);
+            return;
+        }
+        long now = System.nanoTime();
+        boolean[] started = {false};
+        boolean[] accepted = {false};
+        this.typing.computeIfAbsent(chatId, id -> new ConcurrentHashMap<>()).compute(userId, (id, state) -> {
+            if (state == null) {
+                state = new Typing();
+                started[0] = true;
+            } else if (now - state.acceptedAt < typingIntervalNanos) {
+                return state; // Rate limited
+            } else {
+                started[0] = state.expiresAt - now <= 0;
+            }
+            state.acceptedAt = now;
+            state.expiresAt = now + typingTtlNanos;
+            accepted[0] = true;
+            return state;
+        });
+        if (!accepted[0]) {
+            typingDropped.incrementAndGet();
+            metrics.recordTypingDropped();
+            return;
+        }
+        typingAccepted.incrementAndGet();
+        if (started[0]) dirtyTypingChats.add(chatId);
+    }
+
+    // The user's message arrived, so they are done typing it
+    public void messageSent(Long userId, Long chatId) {
+        if (enabled) stoppedTyping(userId, chatId);
+    }
+
+    @Scheduled(initialDelayString = "${chat.presence.flush-interval-ms:1000}",
+               fixedDelayString = "${chat.presence.flush-interval-ms:1000}")
+    public void flush() {
+        if (!enabled) return;
+        flushPresence();
+        flushTyping();
+    }
+
+    public Map<String, Object> stats() {
+        int typingNow = 0;
+        for (Set<Long> typers : sentTypers.values()) {
+            typingNow += typers.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("onlineUsers", announced.size());
+        stats.put("typingUsers", typingNow);
+        stats.put("presenceFrames", presenceFrames.get());
+        stats.put("typingFrames", typingFrames.get());
+        stats.put("typingEventsAccepted", typingAccepted.get());
+        stats.put("typingEventsDropped", typingDropped.get());
+        return stats;
+    }
+
+    // --- PRESENCE ---
+
+    private void flushPresence() {
+        // 1. Final state of every user that changed since the last flush, announced only if it differs
+        // Key: recipient User ID, Value: the changes they get in one frame
+        Map<Long, Changes> changesByRecipient = new HashMap<>();
+        for (Long userId : List.copyOf(dirtyUsers.keySet())) {
+            Set<Long> chatsWhenClosed = dirtyUsers.remove(userId);
+            boolean online = !routingIndex.sessionsForUser(userId).isEmpty();
+            if (online == announced.contains(userId)) continue; // Back to where it was, e.g. a quick reconnect
+
+            Set<Long> chats = online ? routingIndex.chatsOf(userId) : chatsWhenClosed;
+            String username = username(userId);
+            if (online) announced.add(userId);
+            else announced.remove(userId);
+            if (username == null) continue;
+
+            for (Long recipient : usersSharingChats(chats, userId)) {
+                Changes changes = changesByRecipient.computeIfAbsent(recipient, id -> new Changes());
+                (online ? changes.online : changes.offline).add(username);
+            }
+        }
+
+        // 2. One frame per recipient user, the same for all of their sessions
+        for (Map.Entry<Long, Changes> entry : changesByRecipient.entrySet()) {
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", PRESENCE);
+            frame.put("online", entry.getValue().online);
+            frame.put("offline", entry.getValue().offline);
+            send(routingIndex.sessionsForUser(entry.getKey()), frame);
+        }
+
+        // 3. Full lists for new sessions and the members of new chats, after the deltas so they are current
+        for (Long chatId : List.copyOf(newChats)) {
+            newChats.remove(chatId);
+            needSnapshot.addAll(routingIndex.sessionsForChat(chatId));
+        }
+        for (WebSocketSession session : List.copyOf(needSnapshot)) {
+            needSnapshot.remove(session);
+            Long userId = routingIndex.userOf(session);
+            if (userId == null || !session.isOpen()) continue;
+
+            Set<String> online = new TreeSet<>();
+            for (Long other : usersSharingChats(routingIndex.chatsOf(userId), userId)) {
+                if (!announced.contains(other)) continue;
+                String username = username(other);
+                if (username != null) online.add(username);
+            }
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", PRESENCE);
+            frame.put("snapshot", true);
+            frame.put("online", online);
+            send(List.of(session), frame);
+        }
+    }
+
+    // Online users with a session in any of the chats, except the user themselves
+    private Set<Long> usersSharingChats(Set<Long> chats, Long userId) {
+        Set<Long> users = new HashSet<>();
+        for (Long chatId : chats) {
+            for (WebSocketSession session : routingIndex.sessionsForChat(chatId)) {
+                Long other = routingIndex.userOf(session);
+                if (other != null && !other.equals(userId)) users.add(other);
+            }
+        }
+        return users;
+    }
+
+    private void send(Collection<WebSocketSession> sessions, Map<String, Object> frame) {
+        if (sessions.isEmpty()) return;
+        sessionOutbox.sendAll(sessions, new TextMessage(objectMapper.writeValueAsString(frame)));
+        presenceFrames.addAndGet(sessions.size());
+        metrics.recordPresenceFrames(sessions.size());
+    }
+
+    // --- TYPING ---
+
+    private void stoppedTyping(Long userId, Long chatId) {
+        Map<Long, Typing> typers = typing.get(chatId);
+        if (typers == null) return;
+        boolean[] stopped = {false};
+        // Keeps the entry, so stopping and starting again is still rate limited
+        typers.computeIfPresent(userId, (id, state) -> {
+            long now = System.nanoTime();
+            stopped[0] = state.expiresAt - now > 0;
+            state.expiresAt = now;
+            return state;
+        });
+        if (stopped[0]) dirtyTypingChats.add(chatId);
+    }
+
+    private void flushTyping() {
+        long now = System.nanoTime();
+        // 1. Expired typers change their chat just like a stop does; forget entries nobody can still be limited by
+        for (Map.Entry<Long, Map<Long, Typing>> entry : typing.entrySet()) {
+            Long chatId = entry.getKey();
+            Set<Long> sent = sentTypers.getOrDefault(chatId, Set.of());
+            entry.getValue().forEach((userId, state) -> {
+                boolean active = state.expiresAt - now > 0;
+                if (active != sent.contains(userId)) dirtyTypingChats.add(chatId);
+                if (!active && now - state.acceptedAt >= typingIntervalNanos) {
+                    entry.getValue().remove(userId, state);
+                }
+            });
+            // An event racing with this removal is lost; the typing client sends another within seconds
+            if (entry.getValue().isEmpty()) typing.remove(chatId, entry.getValue());
+        }
+
+        // 2. The new set of typers to each changed chat
+        for (Long chatId : List.copyOf(dirtyTypingChats)) {
+            dirtyTypingChats.remove(chatId);
+            Set<Long> typers = new HashSet<>();
+            typing.getOrDefault(chatId, Map.of()).forEach((userId, state) -> {
+                if (state.expiresAt - now > 0) typers.add(userId);
+            });
+            if (typers.equals(sentTypers.getOrDefault(chatId, Set.of()))) continue;
+            if (typers.isEmpty()) sentTypers.remove(chatId);
+            else sentTypers.put(chatId, typers);
+
+            List<String> names = new ArrayList<>(typers.size());
+            for (Long userId : typers) {
+                String username = username(userId);
+                if (username != null) names.add(username);
+            }
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("type", TYPING);
+            frame.put("chatId", chatId);
+            frame.put("users", names);
+
+            Collection<WebSocketSession> sessions = routingIndex.sessionsForChat(chatId);
+            if (sessions.isEmpty()) continue;
+            sessionOutbox.sendAll(sessions, new TextMessage(objectMapper.writeValueAsString(frame)), TYPING + ":" + chatId);
+            typingFrames.addAndGet(sessions.size());
+            metrics.recordTypingFrames(sessions.size());
+        }
+    }
+
+    private String username(Long userId) {
+        return entityCache.findUser(userId).map(User::getUsername).orElse(null);
+    }
+
+    private static final class Changes {
+        final Set<String> online = new TreeSet<>();
+        final Set<String> offline = new TreeSet<>();
+    }
+
+    // Mutated inside ConcurrentHashMap.compute, read by flush(). Both are System.nanoTime() values.
+    private static final class Typing {
+        volatile long acceptedAt;
+        volatile long expiresAt;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.chat.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Indexes messages written before message_terms existed, in the background so startup does not wait for it:
+ * one batch of chat.search.backfill.batch-size messages per transaction, every chat.search.backfill.interval-ms.
+ * It walks down from the newest message and new messages are indexed as they are written, so a restart carries on
+ * below the lowest message indexed so far (see {@link MessageSearchService#backfillStart()}).
+ * Until it is done, searches can miss older messages; {@link #isComplete()} says so.
+ */
+@Service
+public class SearchIndexBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexBackfill.class);
+    // Progress is logged every this many batches
+    private static final int LOG_EVERY_BATCHES = 100;
+
+    private final MessageSearchService searchService;
+    private final int batchSize;
+
+    // Only the scheduler thread writes these, the admin view reads them
+    private volatile boolean complete;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile long startedBelowId;
+    // The next batch is below this id, null until the first run
+    private volatile Long nextBelowId;
+    private volatile long batches;
+
+    public SearchIndexBackfill(MessageSearchService searchService,
+                               @Value("${chat.search.backfill.batch-size:1000}") int batchSize) {
+        this.searchService = searchService;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Scheduled(initialDelayString = "${chat.search.backfill.initial-delay-ms:1000}",
+               fixedDelayString = "${chat.search.backfill.interval-ms:50}")
+    public void indexNextBatch() {
+        if (complete) return;
+        if (nextBelowId == null) {
+            startedAt = LocalDateTime.now();
+            startedBelowId = searchService.backfillStart();
+            nextBelowId = startedBelowId;
+        }
+
+        Long lowestId = searchService.indexBatchBefore(nextBelowId, batchSize);
+        if (lowestId == null) {
+            complete = true;
+            finishedAt = LocalDateTime.now();
+            if (batches > 0) log.info("Indexed existing messages for search in {} batches", batches);
+            return;
+        }
+        nextBelowId = lowestId;
+        batches++;
+        if (batches % LOG_EVERY_BATCHES == 0) {
+            log.info("Indexing existing messages for search: {} batches so far, now below message {}", batches, lowestId);
+        }
+    }
+
+    // False while messages written before the index existed may still be missing from search results
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("complete", complete);
+        stats.put("startedAt", startedAt);
+        stats.put("finishedAt", finishedAt);
+        stats.put("startedBelowId", startedBelowId);
+        stats.put("nextBelowId", nextBelowId);
+        stats.put("batches", batches);
+        stats.put("batchSize", batchSize);
+        return stats;
+    }
+}
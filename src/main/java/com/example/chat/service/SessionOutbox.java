@@ -0,0 +1,153 @@
+package com.example.chat.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns one {@link OutboundQueue} per WebSocket session and the small thread pool that drains them.
+ * Everything that writes to a client socket goes through here.
+ * A watchdog thread closes sessions whose write has been blocked for longer than
+ * chat.outbound.send-time-limit-ms, so a few stalled clients cannot hold every send thread.
+ */
+@Service
+public class SessionOutbox {
+
+    private final Map<WebSocketSession, OutboundQueue> queues = new ConcurrentHashMap<>();
+    private final ExecutorService sendExecutor;
+    // Closes stalled sessions; a close can block too, so every close gets its own virtual thread
+    private final ExecutorService closeExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-close-", 1).factory());
+    private final ScheduledExecutorService watchdog;
+    private final ChatRoutingIndex routingIndex;
+    private final FrameCompression compression;
+    private final int bufferSize;
+    private final long sendTimeLimitNanos;
+    private final OutboundQueue.OverflowPolicy overflowPolicy;
+
+    public SessionOutbox(ChatRoutingIndex routingIndex,
+                         FrameCompression compression,
+                         @Value("${chat.outbound.buffer-size:1000}") int bufferSize,
+                         @Value("${chat.outbound.send-time-limit-ms:10000}") long sendTimeLimitMs,
+                         @Value("${chat.outbound.overflow:drop-oldest}") OutboundQueue.OverflowPolicy overflowPolicy,
+                         @Value("${chat.outbound.threads:4}") int threads,
+                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.routingIndex = routingIndex;
+        this.compression = compression;
+        this.bufferSize = bufferSize;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        this.overflowPolicy = overflowPolicy;
+
+        if (virtualThreads) {
+            // A blocked send parks a virtual thread instead of holding one of a few pool threads
+            this.sendExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-send-", 1).factory());
+        } else {
+            AtomicInteger counter = new AtomicInteger();
+            this.sendExecutor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+                Thread t = new Thread(r, "ws-send-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ws-send-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        // A stalled send is closed at most a quarter of the limit late
+        long checkEveryMs = Math.max(100, sendTimeLimitMs / 4);
+        watchdog.scheduleWithFixedDelay(this::closeStalled, checkEveryMs, checkEveryMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void send(WebSocketSession session, TextMessage message) {
+        send(session, message, null);
+    }
+
+    public void send(WebSocketSession session, TextMessage message, String coalesceKey) {
+        enqueue(session, compression.accepts(session) ? compression.compress(message) : message, coalesceKey);
+    }
+
+    public void sendAll(Collection<WebSocketSession> sessions, TextMessage message) {
+        sendAll(sessions, message, null);
+    }
+
+    public void sendAll(Collection<WebSocketSession> sessions, TextMessage message, String coalesceKey) {
+        WebSocketMessage<?> compressed = null; // Deflated once, on the first session that wants it
+        for (WebSocketSession s : sessions) {
+            if (!compression.accepts(s)) {
+                enqueue(s, message, coalesceKey);
+                continue;
+            }
+            if (compressed == null) compressed = compression.compress(message);
+            enqueue(s, compressed, coalesceKey);
+        }
+    }
+
+    public void remove(WebSocketSession session) {
+        OutboundQueue queue = queues.remove(session);
+        if (queue != null) queue.close();
+    }
+
+    // Per-session queue depth, deepest (most lagging) first
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (OutboundQueue queue : queues.values()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("sessionId", queue.session().getId());
+            map.put("userId", routingIndex.userOf(queue.session()));
+            map.put("queueDepth", queue.depth());
+            map.put("sent", queue.sentCount());
+            map.put("dropped", queue.droppedCount());
+            result.add(map);
+        }
+        result.sort(Comparator.comparingInt((Map<String, Object> m) -> (int) m.get("queueDepth")).reversed());
+        return result;
+    }
+
+    public int totalDepth() {
+        int total = 0;
+        for (OutboundQueue queue : queues.values()) {
+            total += queue.depth();
+        }
+        return total;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        watchdog.shutdownNow();
+        sendExecutor.shutdown();
+        closeExecutor.shutdown();
+    }
+
+    void closeStalled() {
+        long now = System.nanoTime();
+        for (OutboundQueue queue : queues.values()) {
+            queue.checkSendTime(now);
+        }
+    }
+
+    private void enqueue(WebSocketSession session, WebSocketMessage<?> message, String coalesceKey) {
+        if (!session.isOpen()) return;
+        queues.computeIfAbsent(session, this::newQueue).enqueue(message, coalesceKey);
+    }
+
+    private OutboundQueue newQueue(WebSocketSession session) {
+        return new OutboundQueue(session, sendExecutor, closeExecutor, bufferSize, sendTimeLimitNanos, overflowPolicy);
+    }
+}
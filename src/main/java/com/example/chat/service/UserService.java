@@ -10,13 +10,17 @@ import java.util.List;
 public class UserService {
 
     private final UserRepository repo;
+    private final EntityCache entityCache;
 
-    public UserService(UserRepository repo) {
+    public UserService(UserRepository repo, EntityCache entityCache) {
         this.repo = repo;
+        this.entityCache = entityCache;
     }
 
     public User save(User user) {
-        return repo.save(user);
+        User saved = repo.save(user);
+        entityCache.evictUser(saved.getId()); // May have been an update of a cached user
+        return saved;
     }
 
     public List<User> findAll() {
@@ -0,0 +1,68 @@
+package com.example.chat.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory version stamps of each user's chat list and each chat's history, for conditional GETs.
+ * A stamp changes whenever what the endpoint would return may have changed, so the controllers can answer
+ * If-None-Match with a 304 from a map lookup instead of running the query.
+ *
+ * Stamps are bumped once the changing transaction has completed: a client reading in between
+ * gets the old rows with the old stamp, never the old rows with the new one.
+ * They start over on every server start, the epoch in the ETag keeps old ones from matching.
+ */
+@Service
+public class VersionStamps {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    // One counter for everything, so a stamp never comes back after its entry was replaced
+    private final AtomicLong clock = new AtomicLong();
+    // Key: User ID, Value: stamp of the user's chat list (0 = unchanged since start)
+    private final Map<Long, Long> inboxes = new ConcurrentHashMap<>();
+    // Key: Chat ID, Value: stamp of the chat's history
+    private final Map<Long, Long> chats = new ConcurrentHashMap<>();
+
+    // Weak: the same stamp covers the gzipped and the plain body
+    public String inboxEtag(Long userId) {
+        return "W/\"" + epoch + "-i" + inboxes.getOrDefault(userId, 0L) + "\"";
+    }
+
+    public String chatEtag(Long chatId) {
+        return "W/\"" + epoch + "-c" + chats.getOrDefault(chatId, 0L) + "\"";
+    }
+
+    public void inboxesChanged(Collection<Long> userIds) {
+        List<Long> copy = List.copyOf(userIds);
+        afterCompletion(() -> {
+            for (Long userId : copy) {
+                inboxes.put(userId, clock.incrementAndGet());
+            }
+        });
+    }
+
+    public void chatChanged(Long chatId) {
+        afterCompletion(() -> chats.put(chatId, clock.incrementAndGet()));
+    }
+
+    // Also after a rollback: a needless bump only costs one full response
+    private static void afterCompletion(Runnable bump) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                bump.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.chat.store;
+
+import com.example.chat.model.Message;
+import com.example.chat.repository.MessageRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Default engine: the messages table, through Hibernate, plus whatever was archived out of it
+@Component
+@ConditionalOnProperty(name = "chat.storage.engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaMessageStore implements MessageStore {
+
+    private final MessageRepository messageRepository;
+    private final MessageArchive archive;
+
+    public JpaMessageStore(MessageRepository messageRepository, MessageArchive archive) {
+        this.messageRepository = messageRepository;
+        this.archive = archive;
+    }
+
+    @Override
+    public List<Message> append(List<Message> messages) {
+        return messageRepository.saveAll(messages);
+    }
+
+    @Override
+    public long lastSeq(Long chatId) {
+        Long hot = messageRepository.findMaxSeq(chatId);
+        return hot != null ? hot : archive.lastSeq(chatId);
+    }
+
+    // Table only: replay is for short gaps, a gap reaching into the archive is answered with a resync
+    @Override
+    public List<Message> pageAfterSeq(Long chatId, long afterSeq, int limit) {
+        return toMessages(messageRepository.findPageAfterSeq(chatId, afterSeq, Limit.of(limit)));
+    }
+
+    @Override
+    public List<Message> pageBefore(Long chatId, long beforeId, int limit) {
+        List<Message> page = toMessages(messageRepository.findPageBefore(chatId, beforeId, Limit.of(limit)));
+        if (page.size() == limit) return page;
+
+        // Ran out of hot rows, the rest of the page is in the archive (if anything is)
+        long lastArchived = archive.lastArchivedId(chatId);
+        if (lastArchived == 0) return page;
+        List<Message> merged = new ArrayList<>(page);
+        long archiveBefore = Math.min(beforeId, lastArchived + 1);
+        merged.addAll(archive.pageBefore(chatId, archiveBefore, limit - page.size()));
+        return merged;
+    }
+
+    @Override
+    public List<Message> pageAfter(Long chatId, long afterId, int limit) {
+        long lastArchived = archive.lastArchivedId(chatId);
+        if (afterId >= lastArchived) {
+            return toMessages(messageRepository.findPageAfter(chatId, afterId, Limit.of(limit)));
+        }
+
+        List<Message> merged = new ArrayList<>(archive.pageAfter(chatId, afterId, limit));
+        if (merged.size() < limit) {
+            merged.addAll(toMessages(messageRepository.findPageAfter(chatId, lastArchived, Limit.of(limit - merged.size()))));
+        }
+        return merged;
+    }
+
+    @Override
+    public List<Message> findByIds(Collection<Long> ids) {
+        List<Message> found = new ArrayList<>(toMessages(messageRepository.findStoredByIdIn(ids)));
+        if (found.size() == ids.size()) return found;
+
+        Set<Long> missing = new HashSet<>(ids);
+        for (Message m : found) {
+            missing.remove(m.getId());
+        }
+        found.addAll(archive.findByIds(missing));
+        return found;
+    }
+
+    // Table rows in id order over the (chat_id, id) index, two statements per chunk; the archive once they are gone
+    @Override
+    @Transactional
+    public int purgeChat(Long chatId, int limit) {
+        List<Long> ids = messageRepository.findIdsByChat(chatId, Limit.of(limit));
+        if (ids.isEmpty()) {
+            archive.deleteChat(chatId);
+            return 0;
+        }
+        return messageRepository.deleteByIdIn(ids);
+    }
+
+    // Detached messages carrying only what the projection read, like the other engines return
+    private static List<Message> toMessages(List<StoredMessage> rows) {
+        return rows.stream().map(StoredMessage::toMessage).toList();
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.chat.store;
+
+import com.example.chat.model.ArchiveSegment;
+import com.example.chat.model.Message;
+import com.example.chat.repository.ArchiveSegmentRepository;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.service.BoundedCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold storage for old messages of the jpa engine.
+ *
+ * The archiver moves the oldest messages of a chat out of the messages table into
+ * immutable gzip files (chat-<chatId>/<firstId>-<lastId>.seg.gz) of {@link MessageRecordCodec}
+ * records, one archive_segments row per file. Messages are always archived as a prefix by id,
+ * so for every chat all archived ids are below all ids still in the table: reads take
+ * the table first and only continue into the archive below {@link #lastArchivedId(Long)}.
+ */
+@Service
+public class MessageArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchive.class);
+
+    private final ArchiveSegmentRepository segmentRepository;
+    private final MessageRepository messageRepository;
+    private final Path dir;
+    // Decoded segments, newest chats' old pages tend to be read a few times in a row
+    private final BoundedCache<Long, List<StoredMessage>> decoded;
+    // Key: Chat ID, Value: highest archived message id (0 = nothing archived)
+    private final Map<Long, Long> lastArchivedIds = new ConcurrentHashMap<>();
+
+    public MessageArchive(ArchiveSegmentRepository segmentRepository,
+                          MessageRepository messageRepository,
+                          @Value("${chat.archive.dir:./data/archive}") String dir,
+                          @Value("${chat.archive.cached-segments:64}") int cachedSegments) {
+        this.segmentRepository = segmentRepository;
+        this.messageRepository = messageRepository;
+        this.dir = Path.of(dir);
+        this.decoded = new BoundedCache<>(cachedSegments, 10, TimeUnit.MINUTES);
+    }
+
+    public long lastArchivedId(Long chatId) {
+        return lastArchivedIds.computeIfAbsent(chatId, segmentRepository::findLastArchivedId);
+    }
+
+    // Seq of the newest archived message, 0 when none (or it was archived before messages had a seq)
+    public long lastSeq(Long chatId) {
+        if (lastArchivedId(chatId) == 0) return 0;
+        List<Message> newest = pageBefore(chatId, Long.MAX_VALUE, 1);
+        return newest.isEmpty() || newest.get(0).getSeq() == null ? 0 : newest.get(0).getSeq();
+    }
+
+    // Newest first, like MessageStore.pageBefore
+    public List<Message> pageBefore(Long chatId, long beforeId, int limit) {
+        List<Message> page = new ArrayList<>();
+        List<ArchiveSegment> segments = segmentRepository.findByChatIdOrderByFirstMessageIdAsc(chatId);
+        for (int s = segments.size() - 1; s >= 0 && page.size() < limit; s--) {
+            if (segments.get(s).getFirstMessageId() >= beforeId) continue;
+            List<StoredMessage> messages = read(segments.get(s));
+            for (int i = messages.size() - 1; i >= 0 && page.size() < limit; i--) {
+                if (messages.get(i).id() < beforeId) page.add(messages.get(i).toMessage());
+            }
+        }
+        return page;
+    }
+
+    // Oldest first, like MessageStore.pageAfter
+    public List<Message> pageAfter(Long chatId, long afterId, int limit) {
+        List<Message> page = new ArrayList<>();
+        for (ArchiveSegment segment : segmentRepository.findByChatIdOrderByFirstMessageIdAsc(chatId)) {
+            if (page.size() >= limit) break;
+            if (segment.getLastMessageId() <= afterId) continue;
+            for (StoredMessage m : read(segment)) {
+                if (page.size() >= limit) break;
+                if (m.id() > afterId) page.add(m.toMessage());
+            }
+        }
+        return page;
+    }
+
+    // One query for the segments over the ids' range; each segment holding one of them is decoded once
+    public List<Message> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        TreeSet<Long> wanted = new TreeSet<>(ids);
+        List<Message> result = new ArrayList<>();
+        for (ArchiveSegment segment : segmentRepository.findOverlapping(wanted.first(), wanted.last())) {
+            if (wanted.isEmpty()) break;
+            // Skips segments with none of the ids in their range without decoding them
+            if (wanted.subSet(segment.getFirstMessageId(), true, segment.getLastMessageId(), true).isEmpty()) continue;
+            for (StoredMessage m : read(segment)) {
+                if (wanted.remove(m.id())) result.add(m.toMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves up to maxMessages of the chat's oldest messages sent before cutoff into a new segment.
+     * Returns the segment, or null when nothing was old enough.
+     * The file is written before the transaction commits and removed again if it rolls back.
+     */
+    @Transactional
+    public ArchiveSegment archiveOldest(Long chatId, LocalDateTime cutoff, int maxMessages) {
+        List<StoredMessage> batch = new ArrayList<>();
+        for (StoredMessage m : messageRepository.findPageAfter(chatId, 0L, Limit.of(maxMessages))) {
+            if (!m.sentAt().isBefore(cutoff)) break; // Keep the archived part a prefix by id
+            batch.add(m);
+        }
+        if (batch.isEmpty()) return null;
+
+        long firstId = batch.get(0).id();
+        long lastId = batch.get(batch.size() - 1).id();
+        String fileName = "chat-" + chatId + "/" + firstId + "-" + lastId + ".seg.gz";
+        Path file = dir.resolve(fileName);
+        long size = writeSegment(file, batch);
+
+        ArchiveSegment segment = segmentRepository.save(
+                new ArchiveSegment(chatId, firstId, lastId, batch.size(), size, fileName));
+        messageRepository.deleteByIdIn(batch.stream().map(StoredMessage::id).toList());
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    lastArchivedIds.put(chatId, lastId);
+                } else {
+                    deleteQuietly(file);
+                }
+            }
+        });
+        return segment;
+    }
+
+    @Transactional
+    public void deleteChat(Long chatId) {
+        List<ArchiveSegment> segments = segmentRepository.findByChatIdOrderByFirstMessageIdAsc(chatId);
+        if (segments.isEmpty()) return;
+        segmentRepository.deleteByChat(chatId);
+        lastArchivedIds.remove(chatId);
+        // Only once the rows are gone for good: after a rollback they point at these files again
+        afterCommit(() -> {
+            for (ArchiveSegment segment : segments) {
+                decoded.invalidate(segment.getId());
+                deleteQuietly(dir.resolve(segment.getFileName()));
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hotMessages", messageRepository.count());
+        stats.put("archivedMessages", segmentRepository.sumMessageCount());
+        stats.put("archiveSegments", segmentRepository.count());
+        stats.put("archiveBytes", segmentRepository.sumSizeBytes());
+        stats.put("cachedSegments", decoded.size());
+        return stats;
+    }
+
+    private List<StoredMessage> read(ArchiveSegment segment) {
+        return decoded.get(segment.getId(), id -> Optional.of(readSegment(dir.resolve(segment.getFileName()))))
+                .orElseThrow();
+    }
+
+    private static List<StoredMessage> readSegment(Path file) {
+        byte[] bytes;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            bytes = in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archive segment " + file, e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        List<StoredMessage> messages = new ArrayList<>();
+        int offset = 0;
+        MessageRecordCodec.Entry entry;
+        while ((entry = MessageRecordCodec.read(buffer, offset)) != null) {
+            messages.add(entry.message());
+            offset += entry.size();
+        }
+        return messages;
+    }
+
+    // Temp file, fsync, then rename, so a segment file is either complete or absent
+    private static long writeSegment(Path file, List<StoredMessage> messages) {
+        int size = 0;
+        for (StoredMessage m : messages) {
+            size += MessageRecordCodec.messageSize(m);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (StoredMessage m : messages) {
+            MessageRecordCodec.writeMessage(buffer, m);
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                out.write(buffer.array());
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write archive segment " + file, e);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete archive segment {}", file, e);
+        }
+    }
+}
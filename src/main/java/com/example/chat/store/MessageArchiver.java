@@ -0,0 +1,65 @@
+package com.example.chat.store;
+
+import com.example.chat.model.ArchiveSegment;
+import com.example.chat.repository.ChatRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Background job moving messages older than chat.archive.max-age-days out of the messages table
+ * (see {@link MessageArchive}). Only runs with the jpa engine, the segment engine has no table to shrink.
+ */
+@Component
+@ConditionalOnExpression("${chat.archive.enabled:false} and '${chat.storage.engine:jpa}' == 'jpa'")
+public class MessageArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiver.class);
+
+    private final MessageArchive archive;
+    private final ChatRepository chatRepository;
+    private final int maxAgeDays;
+    private final int segmentMessages;
+
+    public MessageArchiver(MessageArchive archive,
+                           ChatRepository chatRepository,
+                           @Value("${chat.archive.max-age-days:30}") int maxAgeDays,
+                           @Value("${chat.archive.segment-messages:10000}") int segmentMessages) {
+        this.archive = archive;
+        this.chatRepository = chatRepository;
+        this.maxAgeDays = maxAgeDays;
+        this.segmentMessages = Math.max(1, segmentMessages);
+    }
+
+    @Scheduled(initialDelayString = "${chat.archive.initial-delay-ms:60000}",
+               fixedDelayString = "${chat.archive.interval-ms:3600000}")
+    public void archiveOldMessages() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(maxAgeDays);
+        int segments = 0;
+        long messages = 0;
+
+        // One chat and one segment per transaction, so the table is never locked for long
+        for (Long chatId : chatRepository.findAllIds()) {
+            try {
+                ArchiveSegment segment = archive.archiveOldest(chatId, cutoff, segmentMessages);
+                while (segment != null) {
+                    segments++;
+                    messages += segment.getMessageCount();
+                    if (segment.getMessageCount() < segmentMessages) break; // Nothing older left
+                    segment = archive.archiveOldest(chatId, cutoff, segmentMessages);
+                }
+            } catch (RuntimeException e) {
+                log.error("Archiving chat {} failed, will retry on the next run", chatId, e);
+            }
+        }
+
+        if (segments > 0) {
+            log.info("Archived {} messages older than {} into {} segments", messages, cutoff, segments);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.chat.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary record format shared by the message segment files.
+ *
+ * <pre>
+ * int  length      bytes after the header
+ * int  crc         CRC32C of those bytes
+ * byte type        MESSAGE, CHAT_DELETED or MESSAGE_DELETED
+ * ...  body        MESSAGE: id, chatId, seq, authorId (longs), sentAt (epoch second long + nano int),
+ *                  author (short length + UTF-8), content (int length + UTF-8)
+ *                  CHAT_DELETED: chatId (long)
+ *                  MESSAGE_DELETED: chatId, id (longs); an earlier MESSAGE whose transaction rolled back
+ * </pre>
+ *
+ * A zero length marks the end of the written part of a file. A record whose length runs
+ * past the end or whose CRC doesn't match was torn by a crash and ends the scan.
+ */
+public final class MessageRecordCodec {
+
+    public static final int HEADER_SIZE = 8;
+    public static final byte TYPE_CHAT_DELETED = 2;
+    public static final byte TYPE_MESSAGE = 3;
+    public static final byte TYPE_MESSAGE_DELETED = 4;
+
+    private MessageRecordCodec() {}
+
+    // One decoded record. message is null for CHAT_DELETED and MESSAGE_DELETED, messageId is 0 for CHAT_DELETED,
+    // size includes the header.
+    public record Entry(byte type, long chatId, long messageId, StoredMessage message, int size) {}
+
+    public static int messageSize(StoredMessage m) {
+        return HEADER_SIZE + 1 + 8 * 5 + 4 + 2 + utf8(m.author()).length + 4 + utf8(m.content()).length;
+    }
+
+    public static int chatDeletedSize() {
+        return HEADER_SIZE + 1 + 8;
+    }
+
+    public static int messageDeletedSize() {
+        return HEADER_SIZE + 1 + 8 * 2;
+    }
+
+    // Writes at the buffer's position and advances it
+    public static void writeMessage(ByteBuffer out, StoredMessage m) {
+        byte[] author = utf8(m.author());
+        byte[] content = utf8(m.content());
+        int start = beginRecord(out);
+        out.put(TYPE_MESSAGE);
+        out.putLong(m.id());
+        out.putLong(m.chatId());
+        out.putLong(m.seq());
+        out.putLong(m.authorId());
+        out.putLong(m.sentAt().toEpochSecond(ZoneOffset.UTC));
+        out.putInt(m.sentAt().getNano());
+        out.putShort((short) author.length);
+        out.put(author);
+        out.putInt(content.length);
+        out.put(content);
+        endRecord(out, start);
+    }
+
+    public static void writeChatDeleted(ByteBuffer out, long chatId) {
+        int start = beginRecord(out);
+        out.put(TYPE_CHAT_DELETED);
+        out.putLong(chatId);
+        endRecord(out, start);
+    }
+
+    public static void writeMessageDeleted(ByteBuffer out, long chatId, long messageId) {
+        int start = beginRecord(out);
+        out.put(TYPE_MESSAGE_DELETED);
+        out.putLong(chatId);
+        out.putLong(messageId);
+        endRecord(out, start);
+    }
+
+    // Reads the record at offset without moving the buffer's position. Null at the end or on a torn record.
+    public static Entry read(ByteBuffer in, int offset) {
+        if (offset + HEADER_SIZE > in.limit()) return null;
+        int length = in.getInt(offset);
+        if (length <= 0 || offset + HEADER_SIZE + length > in.limit()) return null;
+
+        ByteBuffer body = in.slice(offset + HEADER_SIZE, length);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != in.getInt(offset + 4)) return null;
+
+        int size = HEADER_SIZE + length;
+        byte type = body.get();
+        if (type == TYPE_CHAT_DELETED) {
+            return new Entry(type, body.getLong(), 0, null, size);
+        }
+        if (type == TYPE_MESSAGE_DELETED) {
+            return new Entry(type, body.getLong(), body.getLong(), null, size);
+        }
+        if (type != TYPE_MESSAGE) return null;
+
+        long id = body.getLong();
+        long chatId = body.getLong();
+        long seq = body.getLong();
+        long authorId = body.getLong();
+        LocalDateTime sentAt = LocalDateTime.ofEpochSecond(body.getLong(), body.getInt(), ZoneOffset.UTC);
+        String author = readString(body, Short.toUnsignedInt(body.getShort()));
+        String content = readString(body, body.getInt());
+        return new Entry(type, chatId, id, new StoredMessage(id, chatId, seq, authorId, author, sentAt, content), size);
+    }
+
+    private static int beginRecord(ByteBuffer out) {
+        int start = out.position();
+        out.position(start + HEADER_SIZE);
+        return start;
+    }
+
+    // Fills in length and CRC once the body is written
+    private static void endRecord(ByteBuffer out, int start) {
+        int length = out.position() - start - HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        crc.update(out.slice(start + HEADER_SIZE, length));
+        out.putInt(start, length);
+        out.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private static String readString(ByteBuffer body, int length) {
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.chat.store;
+
+import com.example.chat.model.Message;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Where chat messages live. Everything that writes or reads message history goes through here;
+ * the engine is picked with chat.storage.engine (jpa or segment).
+ */
+public interface MessageStore {
+
+    // Stores the messages in order and assigns their ids. Seqs are already set by the caller.
+    List<Message> append(List<Message> messages);
+
+    // Highest seq stored for the chat, 0 when it has no messages
+    long lastSeq(Long chatId);
+
+    // Up to limit messages of the chat with a seq above afterSeq, oldest first.
+    // May start past afterSeq + 1 when the messages in between are no longer hot (e.g. archived).
+    List<Message> pageAfterSeq(Long chatId, long afterSeq, int limit);
+
+    // Up to limit messages of the chat with an id below beforeId, newest first
+    List<Message> pageBefore(Long chatId, long beforeId, int limit);
+
+    // Up to limit messages of the chat with an id above afterId, oldest first
+    List<Message> pageAfter(Long chatId, long afterId, int limit);
+
+    // In no particular order, ids that don't exist are skipped
+    List<Message> findByIds(Collection<Long> ids);
+
+    // Removes up to limit messages of the chat and returns how many went, 0 once none are left.
+    // Called repeatedly by ChatPurger after the chat was tombstoned.
+    int purgeChat(Long chatId, int limit);
+}
@@ -0,0 +1,465 @@
+package com.example.chat.store;
+
+import com.example.chat.model.Message;
+import com.example.chat.repository.MessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Log-structured message engine (chat.storage.engine=segment).
+ *
+ * Messages of all chats are appended to fixed-size segment files (segment-000001.log, ...)
+ * in {@link MessageRecordCodec} format. Files are memory-mapped: appends are a copy into the
+ * mapping of the active segment, reads are copies out of it, with no query or ORM in between.
+ * An in-memory index maps every message id and every chat to record locations; it is rebuilt
+ * at startup by scanning the segments, and the scan stops at the first torn record of the
+ * last segment, which becomes the new end of the log.
+ *
+ * Records written before messages had a seq get their position in the chat as seq when indexed,
+ * which is what the sequencer would have given them.
+ *
+ * Appends go to the log right away, inside the caller's transaction; if that transaction rolls back,
+ * a MESSAGE_DELETED tombstone per message takes them out again (readers may have seen them meanwhile).
+ *
+ * Deleting a chat appends a tombstone. Space of deleted chats is not reclaimed.
+ * Ids continue after the highest id of the messages table, so ids stay unique when
+ * switching engines; existing rows are not copied over.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.storage.engine", havingValue = "segment")
+public class SegmentMessageStore implements MessageStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentMessageStore.class);
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final MessageRepository messageRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private int writePosition;
+    private long lastId;
+
+    // Ids are assigned in increasing order, so both arrays stay sorted by id
+    private final LongArray ids = new LongArray();
+    private final LongArray locations = new LongArray();
+    private final Map<Long, ChatIndex> chats = new HashMap<>();
+
+    public SegmentMessageStore(MessageRepository messageRepository,
+                               @Value("${chat.storage.segment.dir:./data/segments}") String dir,
+                               @Value("${chat.storage.segment.size-mb:64}") int segmentSizeMb,
+                               @Value("${chat.storage.segment.fsync:true}") boolean fsync) {
+        // A mapping and the offsets in the index are ints
+        long bytes = segmentSizeMb * 1024L * 1024L;
+        if (segmentSizeMb < 1 || bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("chat.storage.segment.size-mb must be between 1 and "
+                    + Integer.MAX_VALUE / (1024 * 1024) + ", was " + segmentSizeMb);
+        }
+        this.messageRepository = messageRepository;
+        this.dir = Path.of(dir);
+        this.segmentSize = (int) bytes;
+        this.fsync = fsync;
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingInt(SegmentMessageStore::segmentNumber))
+                    .toList();
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            boolean last = i == files.size() - 1;
+            Segment segment = Segment.open(files.get(i), segmentNumber(files.get(i)), last ? segmentSize : 0);
+            segments.add(segment);
+            int end = scan(segments.size() - 1);
+            if (last) {
+                active = segment;
+                writePosition = end;
+                truncateTail(segment, end);
+            }
+        }
+        if (active == null) {
+            roll();
+        }
+
+        Long tableMax = messageRepository.findMaxId();
+        if (tableMax != null) lastId = Math.max(lastId, tableMax);
+        log.info("Opened {} message segments in {}, {} messages in {} chats",
+                segments.size(), dir, ids.size(), chats.size());
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (active != null) active.buffer.force();
+            for (Segment segment : segments) {
+                segment.channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> append(List<Message> messages) {
+        lock.writeLock().lock();
+        try {
+            for (Message message : messages) {
+                message.setId(lastId + 1);
+                if (message.getSeq() == null) message.setSeq(lastSeqOf(message.getChat().getId()) + 1);
+                StoredMessage stored = StoredMessage.of(message);
+                int location = reserve(MessageRecordCodec.messageSize(stored));
+                MessageRecordCodec.writeMessage(active.buffer, stored);
+                writePosition = active.buffer.position();
+                lastId = stored.id();
+                index(stored, location(segments.size() - 1, location));
+            }
+            if (fsync) active.buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Message> appended = List.copyOf(messages);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) discard(appended);
+                }
+            });
+        }
+        return messages;
+    }
+
+    // Highest message id handed out so far
+    public long lastId() {
+        lock.readLock().lock();
+        try {
+            return lastId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long lastSeq(Long chatId) {
+        lock.readLock().lock();
+        try {
+            return lastSeqOf(chatId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> pageAfterSeq(Long chatId, long afterSeq, int limit) {
+        lock.readLock().lock();
+        try {
+            ChatIndex chat = chats.get(chatId);
+            if (chat == null) return List.of();
+            int start = chat.seqs.firstIndexAtLeast(afterSeq + 1);
+            int count = Math.min(chat.seqs.size() - start, limit);
+            List<Message> page = new ArrayList<>(count);
+            for (int i = start; i < start + count; i++) {
+                page.add(message(chat, i));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> pageBefore(Long chatId, long beforeId, int limit) {
+        lock.readLock().lock();
+        try {
+            ChatIndex chat = chats.get(chatId);
+            if (chat == null) return List.of();
+            int end = chat.ids.firstIndexAtLeast(beforeId);
+            int start = Math.max(0, end - limit);
+            List<Message> page = new ArrayList<>(end - start);
+            for (int i = end - 1; i >= start; i--) {
+                page.add(message(chat, i));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> pageAfter(Long chatId, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            ChatIndex chat = chats.get(chatId);
+            if (chat == null) return List.of();
+            int start = chat.ids.firstIndexAtLeast(afterId + 1);
+            int count = Math.min(chat.ids.size() - start, limit);
+            List<Message> page = new ArrayList<>(count);
+            for (int i = start; i < start + count; i++) {
+                page.add(message(chat, i));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> findByIds(Collection<Long> wanted) {
+        lock.readLock().lock();
+        try {
+            List<Message> result = new ArrayList<>(wanted.size());
+            for (Long id : wanted) {
+                int i = ids.firstIndexAtLeast(id);
+                if (i == ids.size() || ids.get(i) != id) continue;
+                StoredMessage stored = read(locations.get(i));
+                if (chats.containsKey(stored.chatId())) result.add(stored.toMessage()); // Else its chat was deleted
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A single tombstone record drops the whole chat, so there is nothing to chunk
+    @Override
+    public int purgeChat(Long chatId, int limit) {
+        return deleteChat(chatId);
+    }
+
+    // Returns how many messages the chat had
+    public int deleteChat(Long chatId) {
+        lock.writeLock().lock();
+        try {
+            ChatIndex index = chats.remove(chatId);
+            if (index == null) return 0;
+            reserve(MessageRecordCodec.chatDeletedSize());
+            MessageRecordCodec.writeChatDeleted(active.buffer, chatId);
+            writePosition = active.buffer.position();
+            if (fsync) active.buffer.force();
+            return index.ids.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Takes the messages of a rolled back transaction out of the log again
+    private void discard(List<Message> messages) {
+        lock.writeLock().lock();
+        try {
+            for (Message message : messages) {
+                reserve(MessageRecordCodec.messageDeletedSize());
+                MessageRecordCodec.writeMessageDeleted(active.buffer, message.getChat().getId(), message.getId());
+                writePosition = active.buffer.position();
+                unindex(message.getChat().getId(), message.getId());
+            }
+            if (fsync) active.buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rolls to a new segment if the record doesn't fit and positions the buffer for writing.
+    // Caller must hold the write lock. Returns the offset the record goes to.
+    private int reserve(int size) {
+        if (size > segmentSize - Integer.BYTES) {
+            throw new IllegalArgumentException("Record of " + size + " bytes does not fit in a segment");
+        }
+        // Keep room for a zero length after the last record, it marks the end when scanning
+        if (writePosition + size > active.buffer.capacity() - Integer.BYTES) {
+            roll();
+        }
+        active.buffer.position(writePosition);
+        return writePosition;
+    }
+
+    private void roll() {
+        try {
+            if (active != null) active.buffer.force();
+            int number = active == null ? 1 : active.number + 1;
+            active = Segment.open(dir.resolve(String.format("segment-%06d.log", number)), number, segmentSize);
+            segments.add(active);
+            writePosition = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a new message segment", e);
+        }
+    }
+
+    // Rebuilds the index from one segment, returns the offset after its last valid record
+    private int scan(int segmentIndex) {
+        MappedByteBuffer buffer = segments.get(segmentIndex).buffer;
+        int offset = 0;
+        MessageRecordCodec.Entry entry;
+        while ((entry = MessageRecordCodec.read(buffer, offset)) != null) {
+            if (entry.type() == MessageRecordCodec.TYPE_MESSAGE) {
+                lastId = Math.max(lastId, entry.message().id());
+                index(entry.message(), location(segmentIndex, offset));
+            } else if (entry.type() == MessageRecordCodec.TYPE_MESSAGE_DELETED) {
+                unindex(entry.chatId(), entry.messageId());
+            } else {
+                chats.remove(entry.chatId());
+            }
+            offset += entry.size();
+        }
+        return offset;
+    }
+
+    // Anything after the last valid record was torn by a crash. Zeroed, so the next scan stops at the same place.
+    private void truncateTail(Segment segment, int end) {
+        MappedByteBuffer buffer = segment.buffer;
+        if (end + Integer.BYTES > buffer.capacity() || buffer.getInt(end) == 0) return;
+
+        log.warn("Truncating torn records at offset {} of {}", end, segment.path);
+        byte[] zeros = new byte[8192];
+        for (int pos = end; pos < buffer.capacity(); pos += zeros.length) {
+            buffer.put(pos, zeros, 0, Math.min(zeros.length, buffer.capacity() - pos));
+        }
+        buffer.force();
+    }
+
+    private void index(StoredMessage message, long location) {
+        ids.add(message.id());
+        locations.add(location);
+        ChatIndex chat = chats.computeIfAbsent(message.chatId(), id -> new ChatIndex());
+        chat.ids.add(message.id());
+        chat.locations.add(location);
+        chat.seqs.add(message.seq() > 0 ? message.seq() : chat.lastSeq() + 1);
+    }
+
+    // Rolled back messages are usually the newest, so the arrays only shift a little
+    private void unindex(long chatId, long messageId) {
+        int i = ids.firstIndexAtLeast(messageId);
+        if (i < ids.size() && ids.get(i) == messageId) {
+            ids.removeAt(i);
+            locations.removeAt(i);
+        }
+        ChatIndex chat = chats.get(chatId);
+        if (chat == null) return;
+        int c = chat.ids.firstIndexAtLeast(messageId);
+        if (c < chat.ids.size() && chat.ids.get(c) == messageId) {
+            chat.ids.removeAt(c);
+            chat.locations.removeAt(c);
+            chat.seqs.removeAt(c);
+        }
+    }
+
+    // Caller must hold a lock
+    private long lastSeqOf(Long chatId) {
+        ChatIndex chat = chats.get(chatId);
+        return chat == null ? 0 : chat.lastSeq();
+    }
+
+    // The i-th message of the chat, with its seq from the index (also set for records without one)
+    private Message message(ChatIndex chat, int i) {
+        Message message = read(chat.locations.get(i)).toMessage();
+        message.setSeq(chat.seqs.get(i));
+        return message;
+    }
+
+    private StoredMessage read(long location) {
+        Segment segment = segments.get((int) (location >>> 32));
+        return MessageRecordCodec.read(segment.buffer, (int) location).message();
+    }
+
+    private static long location(int segmentIndex, int offset) {
+        return ((long) segmentIndex << 32) | offset;
+    }
+
+    private static int segmentNumber(Path file) {
+        Matcher m = SEGMENT_NAME.matcher(file.getFileName().toString());
+        return m.matches() ? Integer.parseInt(m.group(1)) : 0;
+    }
+
+    private record Segment(Path path, int number, FileChannel channel, MappedByteBuffer buffer) {
+
+        // Maps at least minSize bytes, growing the file if needed (the new part reads as zeros)
+        static Segment open(Path path, int number, int minSize) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.max(channel.size(), minSize);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(path, number, channel, buffer);
+        }
+    }
+
+    private static final class ChatIndex {
+        final LongArray ids = new LongArray();
+        final LongArray locations = new LongArray();
+        // Increases with ids, so it is sorted too
+        final LongArray seqs = new LongArray();
+
+        long lastSeq() {
+            return seqs.size() == 0 ? 0 : seqs.get(seqs.size() - 1);
+        }
+    }
+
+    // Growable long[], cheaper than boxing millions of ids
+    private static final class LongArray {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        void removeAt(int index) {
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+
+        int size() {
+            return size;
+        }
+
+        // Values must be sorted. Returns size when every value is below key.
+        int firstIndexAtLeast(long key) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.chat.store;
+
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * A message as kept by the file-based stores: everything the read paths need,
+ * including the author's name, so reading history never touches the users table.
+ * The jpa engine's history queries project into it too (see MessageRepository.STORED_MESSAGE).
+ */
+public record StoredMessage(long id, long chatId, long seq, long authorId, String author, LocalDateTime sentAt, String content) {
+
+    public static StoredMessage of(Message message) {
+        return new StoredMessage(message.getId(), message.getChat().getId(), message.getSeq() == null ? 0 : message.getSeq(),
+                message.getAuthor().getId(), message.getAuthor().getUsername(), message.getSentAt(), message.getContent());
+    }
+
+    // Detached Message for the controllers; chat and author only carry what was stored
+    public Message toMessage() {
+        User user = new User();
+        user.setId(authorId);
+        user.setUsername(author);
+        Chat chat = new Chat();
+        chat.setId(chatId);
+
+        Message message = new Message(content, user, chat);
+        message.setId(id);
+        message.setSeq(seq == 0 ? null : seq); // 0 = written before messages had a seq
+        message.setSentAt(sentAt);
+        return message;
+    }
+}
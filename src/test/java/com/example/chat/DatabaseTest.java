@@ -0,0 +1,63 @@
+package com.example.chat;
+
+import com.example.chat.model.Chat;
+import com.example.chat.model.ChatMember;
+import com.example.chat.model.User;
+import com.example.chat.repository.ChatMemberRepository;
+import com.example.chat.repository.ChatRepository;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.service.InboxService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+// Base of the tests against the real beans and an in-memory H2. They all share one Spring context and database,
+// so every test creates its own users and chats and only looks at those.
+// The archiver is on but never scheduled (MessageArchiveTest runs it), SqlRecorder only records inside record().
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:chat-test;DB_CLOSE_DELAY=-1",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"spring.h2.console.enabled=false",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=com.example.chat.SqlRecorder",
+		"chat.storage.engine=jpa",
+		"chat.archive.enabled=true",
+		"chat.archive.dir=target/test-archive",
+		"chat.archive.max-age-days=30",
+		"chat.archive.segment-messages=4",
+		"chat.archive.initial-delay-ms=3600000"
+})
+public abstract class DatabaseTest {
+
+	@Autowired
+	protected UserRepository userRepository;
+	@Autowired
+	protected ChatRepository chatRepository;
+	@Autowired
+	protected ChatMemberRepository chatMemberRepository;
+	@Autowired
+	protected InboxService inboxService;
+
+	// Saved as <name>-<random suffix>, so names never clash with other tests' users
+	protected List<User> createUsers(String... names) {
+		String suffix = suffix();
+		return userRepository.saveAll(Arrays.stream(names).map(name -> new User(name + "-" + suffix, "secret")).toList());
+	}
+
+	// A group created by the first member, with all of them as members and in their chat lists
+	protected Chat createGroup(List<User> members) {
+		Chat group = new Chat();
+		group.setChatName("Group " + suffix());
+		group.setCreator(members.get(0));
+		Chat chat = chatRepository.save(group);
+		chatMemberRepository.saveAll(members.stream().map(u -> new ChatMember(chat.getId(), u.getId())).toList());
+		inboxService.chatCreated(chat, members);
+		return chat;
+	}
+
+	private static String suffix() {
+		return UUID.randomUUID().toString().substring(0, 8);
+	}
+}
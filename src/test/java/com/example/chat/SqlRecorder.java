@@ -0,0 +1,30 @@
+package com.example.chat;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hibernate hands it every statement before it runs; keeps the ones run by the test thread inside record()
+public class SqlRecorder implements StatementInspector {
+
+	private static final ThreadLocal<List<String>> recording = new ThreadLocal<>();
+
+	public static List<String> record(Runnable action) {
+		List<String> statements = new ArrayList<>();
+		recording.set(statements);
+		try {
+			action.run();
+		} finally {
+			recording.remove();
+		}
+		return statements;
+	}
+
+	@Override
+	public String inspect(String sql) {
+		List<String> statements = recording.get();
+		if (statements != null) statements.add(sql.toLowerCase());
+		return sql;
+	}
+}
@@ -0,0 +1,96 @@
+package com.example.chat.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientJsonTest {
+
+	@Test
+	void readsMessageEventsWithEscapes() {
+		ClientJson.ServerEvent event = ClientJson.readEvent("""
+				{"type":"message","id":42,"seq":7,"chatId":3,"authorId":1,"author":"al\\"ice",
+				 "content":"line 1\\nline 2 \\u00e9 \\\\ \\t","sentAt":"2026-01-02T10:00:00"}""");
+
+		assertThat(event.type()).isEqualTo("message");
+		assertThat(event.id()).isEqualTo(42);
+		assertThat(event.seq()).isEqualTo(7);
+		assertThat(event.chatId()).isEqualTo(3);
+		assertThat(event.author()).isEqualTo("al\"ice");
+		assertThat(event.content()).isEqualTo("line 1\nline 2 é \\ \t");
+		assertThat(event.chatName()).isNull();
+	}
+
+	@Test
+	void skipsUnknownFieldsAndNestedStructures() {
+		ClientJson.ServerEvent event = ClientJson.readEvent("""
+				{"extra":{"id":99,"content":"nested","deeper":[{"chatId":5}]},"type":"typing",
+				 "list":[1,[2,3],{"a":"b"}],"chatId":12,"users":["bob",{"ignored":true},"carol"],"future":null}""");
+
+		assertThat(event.type()).isEqualTo("typing");
+		assertThat(event.id()).isEqualTo(-1);
+		assertThat(event.chatId()).isEqualTo(12);
+		assertThat(event.content()).isNull();
+		assertThat(event.users()).containsExactly("bob", "carol");
+	}
+
+	@Test
+	void readsPresenceFrames() {
+		ClientJson.ServerEvent event = ClientJson.readEvent("""
+				{"type":"presence","snapshot":true,"online":["alice","bob"],"offline":[]}""");
+
+		assertThat(event.snapshot()).isTrue();
+		assertThat(event.online()).containsExactly("alice", "bob");
+		assertThat(event.offline()).isEmpty();
+		assertThat(event.users()).isEmpty();
+	}
+
+	@Test
+	void badFramesComeBackAsNull() {
+		assertThat(ClientJson.readEvent("[1,2]")).isNull();
+		assertThat(ClientJson.readEvent("{\"type\":\"message\",\"id\":")).isNull();
+		assertThat(ClientJson.readEvent("not json")).isNull();
+	}
+
+	@Test
+	void readsChatListsAndSkipsRowsWithoutId() {
+		List<ClientJson.ChatSummary> chats = ClientJson.readChatList(stream("""
+				[{"id":1,"chatName":"Team","lastMessage":"hi \\"all\\"","hasUnread":true,"lastMessageTime":"10:00",
+				  "members":[{"id":5}]},
+				 {"chatName":"no id"},
+				 {"id":2,"chatName":"bob","lastMessage":null,"hasUnread":false}]"""));
+
+		assertThat(chats).containsExactly(
+				new ClientJson.ChatSummary(1, "Team", "hi \"all\"", true, "10:00"),
+				new ClientJson.ChatSummary(2, "bob", null, false, ""));
+	}
+
+	@Test
+	void readsHistoryPagesWithAndWithoutCursor() {
+		ClientJson.HistoryPage page = ClientJson.readHistoryPage(stream("""
+				{"meta":{"nextCursor":1},"messages":[{"id":10,"time":"09:00","author":"alice","content":"a","seq":1},
+				 {"id":11,"time":"09:01","author":"bob","content":"b"}],"nextCursor":10}"""));
+
+		assertThat(page.messages()).extracting(ClientJson.HistoryMessage::id).containsExactly(10L, 11L);
+		assertThat(page.nextCursor()).isEqualTo(10L);
+		assertThat(ClientJson.readHistoryPage(stream("{\"messages\":[],\"nextCursor\":null}")).nextCursor()).isNull();
+	}
+
+	@Test
+	void truncatedResponsesComeBackAsNull() {
+		assertThat(ClientJson.readChatList(stream("[{\"id\":1,\"chatName\":\"Te"))).isNull();
+		assertThat(ClientJson.readHistoryPage(stream("{\"messages\":[{\"id\":10,"))).isNull();
+		assertThat(ClientJson.readCreatedChat(stream("{\"id\":5,\"chatName\""))).isNull();
+		assertThat(ClientJson.readCreatedChat(stream("{\"id\":5,\"chatName\":\"Team\"}")))
+				.isEqualTo(new ClientJson.CreatedChat(5, "Team"));
+	}
+
+	private static InputStream stream(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,85 @@
+package com.example.chat.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalStoreTest {
+
+	@TempDir
+	Path dir;
+
+	private LocalStore store;
+
+	@BeforeEach
+	void setUp() {
+		store = new LocalStore(dir);
+	}
+
+	@AfterEach
+	void tearDown() {
+		store.close();
+	}
+
+	@Test
+	void messagesWithTabsNewlinesAndBackslashesRoundTrip() throws Exception {
+		ClientJson.HistoryMessage tricky = new ClientJson.HistoryMessage(1, "10:00", "al\tice", "line 1\nline 2\r\n\\t is not a tab\\");
+		store.loadMessages(7).get();
+		store.appendMessages(7, List.of(tricky));
+
+		assertThat(reopen().loadMessages(7).get()).containsExactly(tricky);
+	}
+
+	@Test
+	void chatListRoundTrips() throws Exception {
+		List<ClientJson.ChatSummary> chats = List.of(
+				new ClientJson.ChatSummary(1, "Team\tchat", "see you\\later", true, "09:15"),
+				new ClientJson.ChatSummary(2, "bob", "", false, ""));
+		store.saveChats(chats);
+
+		assertThat(reopen().loadChats().get()).containsExactlyElementsOf(chats);
+	}
+
+	@Test
+	void onlyNewerMessagesAreAppended() throws Exception {
+		store.loadMessages(7).get();
+		store.appendMessages(7, List.of(message(1, "a"), message(2, "b")));
+		store.appendMessages(7, List.of(message(2, "b again"), message(3, "c")));
+
+		assertThat(store.loadMessages(7).get()).extracting(ClientJson.HistoryMessage::content).containsExactly("a", "b", "c");
+	}
+
+	@Test
+	void tornAndGarbledLinesAreSkipped() throws Exception {
+		store.loadMessages(7).get();
+		store.appendMessages(7, List.of(message(1, "a"), message(2, "b")));
+		store = reopen();
+		Path file = dir.resolve("chat-7.log");
+		Files.writeString(file, "x3\t10:00\talice\tbad id\n4\t10:00\tali", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+		List<ClientJson.HistoryMessage> loaded = store.loadMessages(7).get();
+
+		assertThat(loaded).extracting(ClientJson.HistoryMessage::content).containsExactly("a", "b");
+	}
+
+	// Waits for queued writes, then reads the files from scratch
+	private LocalStore reopen() throws Exception {
+		store.loadMessages(-1).get();
+		store.close();
+		store = new LocalStore(dir);
+		return store;
+	}
+
+	private static ClientJson.HistoryMessage message(long id, String content) {
+		return new ClientJson.HistoryMessage(id, "10:00", "alice", content);
+	}
+}
@@ -0,0 +1,48 @@
+package com.example.chat.config;
+
+import com.example.chat.DatabaseTest;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdSequenceAlignerTest extends DatabaseTest {
+
+	@Autowired
+	private IdSequenceAligner aligner;
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Test
+	void sequencePastThePurgedNewestRowStaysThere() {
+		User newest = createUsers("purged").get(0);
+		long before = nextValue();
+		userRepository.delete(newest);
+
+		aligner.afterSingletonsInstantiated(); // As on the next start
+
+		assertThat(nextValue()).isEqualTo(before);
+	}
+
+	@Test
+	void sequenceBehindTheRowsMovesPastThem() {
+		long maxId = createUsers("existing").get(0).getId();
+		long before = nextValue();
+		jdbc.execute("ALTER SEQUENCE users_seq RESTART WITH 1"); // As on a database from before the sequences
+		try {
+			aligner.afterSingletonsInstantiated();
+
+			assertThat(nextValue()).isEqualTo(maxId + Message.ID_ALLOCATION_SIZE);
+		} finally {
+			// Hibernate still holds ids reserved below the old value, the other tests must not get them twice
+			jdbc.execute("ALTER SEQUENCE users_seq RESTART WITH " + before);
+		}
+	}
+
+	private long nextValue() {
+		return jdbc.queryForObject("SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'USERS_SEQ'", Long.class);
+	}
+}
@@ -0,0 +1,94 @@
+package com.example.chat.controller;
+
+import com.example.chat.DatabaseTest;
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.service.MessageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The chat list and history answer a matching If-None-Match with a bodiless 304, until something changes
+class ConditionalGetTest extends DatabaseTest {
+
+	@Autowired
+	private ChatController chatController;
+	@Autowired
+	private MessageController messageController;
+	@Autowired
+	private MessageService messageService;
+
+	private User alice;
+	private User bob;
+	private Chat chat;
+
+	@BeforeEach
+	void createChat() {
+		List<User> users = createUsers("alice", "bob");
+		alice = users.get(0);
+		bob = users.get(1);
+		chat = createGroup(users);
+		messageService.save(new Message("hello", alice, chat));
+	}
+
+	@Test
+	void chatListIsNotModifiedUntilAMessageArrives() {
+		Response first = get(null, request -> chatController.getUserChats(bob.getId(), request));
+		assertThat(first.status).isEqualTo(200);
+		assertThat(first.body).isNotNull();
+		assertThat(first.etag).isNotNull();
+
+		Response again = get(first.etag, request -> chatController.getUserChats(bob.getId(), request));
+		assertThat(again.status).isEqualTo(304);
+		assertThat(again.body).isNull();
+
+		messageService.save(new Message("news", alice, chat));
+
+		Response changed = get(first.etag, request -> chatController.getUserChats(bob.getId(), request));
+		assertThat(changed.status).isEqualTo(200);
+		assertThat(changed.body).isNotNull();
+		assertThat(changed.etag).isNotEqualTo(first.etag);
+	}
+
+	@Test
+	void historyIsNotModifiedUntilAMessageArrives() {
+		Response first = get(null, request -> messageController.getHistory(chat.getId(), request));
+		assertThat(first.status).isEqualTo(200);
+
+		assertThat(get(first.etag, request -> messageController.getHistory(chat.getId(), request)).status).isEqualTo(304);
+
+		messageService.save(new Message("news", bob, chat));
+
+		Response changed = get(first.etag, request -> messageController.getHistory(chat.getId(), request));
+		assertThat(changed.status).isEqualTo(200);
+		assertThat(changed.body).isNotNull();
+	}
+
+	@Test
+	void readingOneChatDoesNotInvalidateAnotherUsersList() {
+		Response first = get(null, request -> chatController.getUserChats(alice.getId(), request));
+
+		chatController.markAsRead(chat.getId(), bob.getId());
+
+		assertThat(get(first.etag, request -> chatController.getUserChats(alice.getId(), request)).status).isEqualTo(304);
+	}
+
+	private static Response get(String ifNoneMatch, Function<ServletWebRequest, Object> endpoint) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+		if (ifNoneMatch != null) request.addHeader("If-None-Match", ifNoneMatch);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		Object body = endpoint.apply(new ServletWebRequest(request, response));
+		return new Response(response.getStatus(), response.getHeader("ETag"), body);
+	}
+
+	private record Response(int status, String etag, Object body) {}
+}
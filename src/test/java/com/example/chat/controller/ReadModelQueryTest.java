@@ -0,0 +1,115 @@
+package com.example.chat.controller;
+
+import com.example.chat.DatabaseTest;
+import com.example.chat.SqlRecorder;
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.service.EntityCache;
+import com.example.chat.service.MessageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Pins down the SQL behind the read endpoints: one statement each, and only the columns they show
+class ReadModelQueryTest extends DatabaseTest {
+
+	@Autowired
+	private MessageController messageController;
+	@Autowired
+	private ChatController chatController;
+	@Autowired
+	private MessageService messageService;
+	@Autowired
+	private EntityCache entityCache;
+
+	private User alice;
+	private Chat chat;
+
+	@BeforeEach
+	void createChat() {
+		List<User> users = createUsers("alice", "bob");
+		alice = users.get(0);
+		chat = createGroup(users);
+		messageService.saveAll(List.of(
+				new Message("hello", alice, chat),
+				new Message("hi there", users.get(1), chat),
+				new Message("how are you", alice, chat)));
+	}
+
+	@Test
+	void historyIsOneQueryOverMessageColumnsAndTheAuthorName() {
+		messageController.getHistoryPage(chat.getId(), null, null, 50); // Also caches the chat's archive position
+
+		List<String> page = SqlRecorder.record(() -> messageController.getHistoryPage(chat.getId(), null, null, 50));
+		List<String> full = SqlRecorder.record(() -> messageController.getHistory(chat.getId()));
+
+		for (List<String> statements : List.of(page, full)) {
+			assertThat(statements).hasSize(1);
+			String sql = statements.get(0);
+			// id, chat_id, seq, author id, username, sent_at, content
+			assertThat(selectedColumns(sql)).hasSize(7);
+			assertThat(sql).contains("username").doesNotContain("password", "email", "chats", "chat_name");
+		}
+	}
+
+	@Test
+	void historyWithoutACursorStopsAtOnePage() {
+		List<Message> more = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			more.add(new Message("m" + i, alice, chat));
+		}
+		messageService.saveAll(more);
+
+		List<Map<String, String>> history = messageController.getHistory(chat.getId());
+
+		assertThat(history).hasSize(200);
+		assertThat(history.get(history.size() - 1)).containsEntry("content", "m249");
+	}
+
+	@Test
+	void chatListIsOneQueryOverTheInboxRow() {
+		List<String> statements = SqlRecorder.record(() -> chatController.getUserChats(alice.getId()));
+
+		assertThat(statements).hasSize(1);
+		String sql = statements.get(0);
+		// chat_id, display_name, last message author id/name/preview/time, unread_count
+		assertThat(selectedColumns(sql)).hasSize(7);
+		assertThat(sql).contains("inbox_entries").doesNotContain("users", "chats ", "messages");
+	}
+
+	@Test
+	void chatLookupOnTheMessagePathLeavesTheCreatorUnloaded() {
+		entityCache.evictChat(chat.getId());
+
+		List<String> statements = SqlRecorder.record(() -> entityCache.findChat(chat.getId()));
+
+		assertThat(statements).hasSize(1);
+		assertThat(statements.get(0)).contains("chats").doesNotContain("users", "password");
+	}
+
+	// Select list of a statement, split on the commas outside parentheses
+	private static List<String> selectedColumns(String sql) {
+		String list = sql.substring(sql.indexOf("select ") + "select ".length(), sql.indexOf(" from "));
+		List<String> columns = new ArrayList<>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < list.length(); i++) {
+			char c = list.charAt(i);
+			if (c == '(') depth++;
+			else if (c == ')') depth--;
+			else if (c == ',' && depth == 0) {
+				columns.add(list.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		columns.add(list.substring(start).trim());
+		return columns;
+	}
+}
@@ -0,0 +1,61 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedCacheTest {
+
+	// Records which keys had to be loaded
+	private final List<String> loads = new ArrayList<>();
+
+	@Test
+	void evictsTheLeastRecentlyUsedEntry() {
+		BoundedCache<String, String> cache = new BoundedCache<>(2, 1, TimeUnit.HOURS);
+		cache.get("a", this::load);
+		cache.get("b", this::load);
+		cache.get("a", this::load); // a is now more recent than b
+		cache.get("c", this::load);
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.evictionCount()).isEqualTo(1);
+		cache.get("a", this::load);
+		cache.get("b", this::load);
+		assertThat(loads).containsExactly("a", "b", "c", "b");
+	}
+
+	@Test
+	void reloadsEntriesPastTheirTimeToLive() {
+		BoundedCache<String, String> cache = new BoundedCache<>(10, 0, TimeUnit.NANOSECONDS);
+		cache.get("a", this::load);
+		cache.get("a", this::load);
+
+		assertThat(loads).containsExactly("a", "a");
+		assertThat(cache.hitCount()).isZero();
+		assertThat(cache.missCount()).isEqualTo(2);
+	}
+
+	@Test
+	void missesAreNotCachedAndInvalidateForgets() {
+		BoundedCache<String, String> cache = new BoundedCache<>(10, 1, TimeUnit.HOURS);
+		assertThat(cache.get("none", key -> Optional.empty())).isEmpty();
+		assertThat(cache.size()).isZero();
+
+		cache.get("a", this::load);
+		assertThat(cache.get("a", this::load)).contains("value of a");
+		assertThat(cache.hitCount()).isEqualTo(1);
+		cache.invalidate("a");
+		cache.get("a", this::load);
+		assertThat(loads).containsExactly("a", "a");
+	}
+
+	private Optional<String> load(String key) {
+		loads.add(key);
+		return Optional.of("value of " + key);
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.chat.service;
+
+import com.example.chat.repository.ChatMemberRepository;
+import com.example.chat.repository.ChatRepository;
+import com.example.chat.store.MessageStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ChatPurgerTest {
+
+	private ChatRepository chatRepository;
+	private ChatMemberRepository chatMemberRepository;
+	private InboxService inboxService;
+	private MessageSearchService searchService;
+	private MessageStore messageStore;
+	private ChatSequencer sequencer;
+	private ChatPurger purger;
+
+	@BeforeEach
+	void setUp() {
+		chatRepository = mock(ChatRepository.class);
+		chatMemberRepository = mock(ChatMemberRepository.class);
+		inboxService = mock(InboxService.class);
+		searchService = mock(MessageSearchService.class);
+		messageStore = mock(MessageStore.class);
+		sequencer = mock(ChatSequencer.class);
+		purger = new ChatPurger(chatRepository, chatMemberRepository, inboxService, searchService,
+				messageStore, sequencer, 1000, 0);
+	}
+
+	@Test
+	void tombstoneHidesTheChatAndDropsItsMembers() {
+		when(chatRepository.markDeleted(eq(5L), any())).thenReturn(1);
+
+		assertThat(purger.tombstone(5L)).isTrue();
+
+		verify(inboxService).chatDeleted(5L);
+		verify(chatMemberRepository).deleteByChat(5L);
+		verifyNoInteractions(messageStore, searchService);
+	}
+
+	@Test
+	void deletingTwiceIsANoOp() {
+		when(chatRepository.markDeleted(eq(5L), any())).thenReturn(0);
+
+		assertThat(purger.tombstone(5L)).isFalse();
+
+		verifyNoInteractions(inboxService, chatMemberRepository);
+	}
+
+	@Test
+	void purgesTermsThenMessagesChunkByChunkThenTheChat() {
+		when(chatRepository.findDeletedIds()).thenReturn(List.of(5L));
+		when(searchService.purgeChat(5L, 1000)).thenReturn(1000, 1000, 200, 0);
+		when(messageStore.purgeChat(5L, 1000)).thenReturn(1000, 300, 0);
+
+		purger.purgeDeletedChats();
+
+		InOrder order = inOrder(searchService, messageStore, chatRepository, sequencer);
+		order.verify(searchService, times(4)).purgeChat(5L, 1000);
+		order.verify(messageStore, times(3)).purgeChat(5L, 1000);
+		order.verify(chatRepository).deleteById(5L);
+		order.verify(sequencer).forget(Set.of(5L));
+		assertThat(purger.stats()).containsEntry("running", List.of());
+	}
+
+	@Test
+	void failedChunkLeavesTheTombstoneForTheNextRun() {
+		when(chatRepository.findDeletedIds()).thenReturn(List.of(5L, 6L));
+		when(searchService.purgeChat(anyLong(), anyInt())).thenReturn(0);
+		when(messageStore.purgeChat(5L, 1000)).thenThrow(new IllegalStateException("lock timeout"));
+		when(messageStore.purgeChat(6L, 1000)).thenReturn(0);
+
+		purger.purgeDeletedChats();
+
+		verify(chatRepository, never()).deleteById(5L);
+		verify(chatRepository).deleteById(6L); // The other chats still go
+
+		reset(messageStore);
+		when(messageStore.purgeChat(5L, 1000)).thenReturn(40, 0);
+		when(chatRepository.findDeletedIds()).thenReturn(List.of(5L));
+		purger.purgeDeletedChats();
+
+		verify(chatRepository).deleteById(5L);
+	}
+}
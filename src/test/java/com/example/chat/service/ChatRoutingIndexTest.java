@@ -0,0 +1,83 @@
+package com.example.chat.service;
+
+import com.example.chat.model.ChatMember;
+import com.example.chat.repository.ChatMemberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ChatRoutingIndexTest {
+
+	private ChatMemberRepository chatMemberRepository;
+	private ChatRoutingIndex index;
+
+	@BeforeEach
+	void setUp() {
+		chatMemberRepository = mock(ChatMemberRepository.class);
+		when(chatMemberRepository.findByUserId(1L)).thenReturn(List.of(new ChatMember(10L, 1L), new ChatMember(11L, 1L)));
+		when(chatMemberRepository.findByUserId(2L)).thenReturn(List.of(new ChatMember(10L, 2L)));
+		index = new ChatRoutingIndex(chatMemberRepository);
+	}
+
+	@Test
+	void routesOnlyToMembersOfTheChat() {
+		WebSocketSession alice = mock(WebSocketSession.class);
+		WebSocketSession bob = mock(WebSocketSession.class);
+		index.register(alice, 1L);
+		index.register(bob, 2L);
+
+		assertThat(index.sessionsForChat(10L)).containsExactlyInAnyOrder(alice, bob);
+		assertThat(index.sessionsForChat(11L)).containsExactly(alice);
+		assertThat(index.sessionsForChat(99L)).isEmpty();
+	}
+
+	@Test
+	void loadsMembershipOncePerOnlineUser() {
+		WebSocketSession first = mock(WebSocketSession.class);
+		WebSocketSession second = mock(WebSocketSession.class);
+		index.register(first, 1L);
+		index.register(first, 1L);
+		index.register(second, 1L);
+
+		verify(chatMemberRepository, times(1)).findByUserId(1L);
+		assertThat(index.sessionsForChat(11L)).containsExactlyInAnyOrder(first, second);
+	}
+
+	@Test
+	void membershipChangeDuringTheQueryIsNotLost() {
+		WebSocketSession bob = mock(WebSocketSession.class);
+		// Bob is added to chat 12 while his chats are being loaded, without the lock
+		when(chatMemberRepository.findByUserId(2L))
+				.thenAnswer(inv -> {
+					index.addMember(12L, 2L);
+					return List.of(new ChatMember(10L, 2L));
+				})
+				.thenReturn(List.of(new ChatMember(10L, 2L), new ChatMember(12L, 2L)));
+
+		assertThat(index.register(bob, 2L)).isTrue();
+
+		verify(chatMemberRepository, times(2)).findByUserId(2L);
+		assertThat(index.sessionsForChat(12L)).containsExactly(bob);
+	}
+
+	@Test
+	void tracksMembershipChangesAndDisconnects() {
+		WebSocketSession bob = mock(WebSocketSession.class);
+		index.register(bob, 2L);
+
+		index.addMember(12L, 2L);
+		assertThat(index.sessionsForChat(12L)).containsExactly(bob);
+
+		index.removeChat(10L);
+		assertThat(index.sessionsForChat(10L)).isEmpty();
+
+		index.unregister(bob);
+		assertThat(index.sessionsForChat(12L)).isEmpty();
+		assertThat(index.sessionCount()).isZero();
+	}
+}
@@ -0,0 +1,238 @@
+package com.example.chat.service;
+
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.store.MessageStore;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class ChatSequencerTest {
+
+	private final ChatEvents chatEvents = mock(ChatEvents.class);
+	private final ChatSequencer sequencer = new ChatSequencer(mock(MessageStore.class), mock(MessageRepository.class), chatEvents);
+	// Stands in for the store: hands out ids in call order and keeps what it stored
+	private final AtomicLong ids = new AtomicLong();
+	private final List<Message> stored = new ArrayList<>();
+
+	@Test
+	void concurrentWritersStoreEveryChatInIdOrder() throws Exception {
+		// Chat 74 shares a stripe with chat 10, chat 11 is only ever written together with 10
+		ExecutorService writers = Executors.newFixedThreadPool(8);
+		List<Future<?>> done = new ArrayList<>();
+		for (int w = 0; w < 8; w++) {
+			int writer = w;
+			done.add(writers.submit(() -> {
+				for (int i = 0; i < 200; i++) {
+					if (writer == 0) {
+						sequencer.append(List.of(message(11L), message(10L)), this::store);
+					} else {
+						sequencer.append(List.of(message(writer % 2 == 0 ? 10L : 74L)), this::store);
+					}
+				}
+			}));
+		}
+		for (Future<?> f : done) {
+			f.get(30, TimeUnit.SECONDS);
+		}
+		writers.shutdown();
+
+		assertThat(seqsInIdOrder(10L)).hasSize(1000).isSorted().doesNotHaveDuplicates().endsWith(1000L);
+		assertThat(seqsInIdOrder(74L)).hasSize(800).isSorted().doesNotHaveDuplicates().endsWith(800L);
+		assertThat(seqsInIdOrder(11L)).hasSize(200).isSorted().doesNotHaveDuplicates().endsWith(200L);
+	}
+
+	@Test
+	void failedStoreGivesItsSeqBack() {
+		assertThatThrownBy(() -> sequencer.append(List.of(message(10L)), messages -> {
+			throw new IllegalStateException("constraint violated");
+		})).isInstanceOf(IllegalStateException.class);
+
+		assertThat(sequencer.append(List.of(message(10L)), this::store).get(0).getSeq()).isEqualTo(1L);
+	}
+
+	@Test
+	void rollbackWithNothingAfterItLeavesNoGap() {
+		inTransaction(() -> sequencer.append(List.of(message(10L), message(10L)), this::store),
+				TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		assertThat(sequencer.append(List.of(message(10L)), this::store).get(0).getSeq()).isEqualTo(1L);
+	}
+
+	@Test
+	void rollbackBehindALaterMessageNeverReusesItsSeq() throws Exception {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			assertThat(sequencer.append(List.of(message(10L)), this::store).get(0).getSeq()).isEqualTo(1L);
+
+			// Another transaction numbers and commits seq 2 while the first one is still open
+			ExecutorService other = Executors.newSingleThreadExecutor();
+			Message later = other.submit(() -> inTransaction(() -> sequencer.append(List.of(message(10L)), this::store),
+					TransactionSynchronization.STATUS_COMMITTED).get(0)).get(5, TimeUnit.SECONDS);
+			other.shutdown();
+			assertThat(later.getSeq()).isEqualTo(2L);
+
+			complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		// Seq 1 stays a gap: handing out 2 again would collide with the committed message
+		assertThat(sequencer.append(List.of(message(10L)), this::store).get(0).getSeq()).isEqualTo(3L);
+	}
+
+	@Test
+	void concurrentRollbacksNeverHandOutASeqTwice() throws Exception {
+		ExecutorService writers = Executors.newFixedThreadPool(8);
+		List<Future<?>> done = new ArrayList<>();
+		for (int w = 0; w < 8; w++) {
+			done.add(writers.submit(() -> {
+				for (int i = 0; i < 200; i++) {
+					int status = i % 3 == 0 ? TransactionSynchronization.STATUS_ROLLED_BACK : TransactionSynchronization.STATUS_COMMITTED;
+					List<Message> saved = inTransaction(() -> sequencer.append(List.of(message(10L)), this::store), status);
+					if (status != TransactionSynchronization.STATUS_COMMITTED) {
+						synchronized (stored) {
+							stored.removeAll(saved);
+						}
+					}
+				}
+			}));
+		}
+		for (Future<?> f : done) {
+			f.get(30, TimeUnit.SECONDS);
+		}
+		writers.shutdown();
+
+		assertThat(seqsInIdOrder(10L)).hasSize(8 * 133).isSorted().doesNotHaveDuplicates();
+	}
+
+	@Test
+	void openTransactionDoesNotHoldUpAChatOnTheSameStripe() throws Exception {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			Message slow = sequencer.append(List.of(message(10L)), this::store).get(0);
+
+			// Chat 74 shares chat 10's stripe: it is numbered, committed and sent while 10's transaction is still open
+			ExecutorService other = Executors.newSingleThreadExecutor();
+			Message fast = other.submit(() -> inTransaction(() -> sequencer.append(List.of(message(74L)), this::store),
+					TransactionSynchronization.STATUS_COMMITTED).get(0)).get(5, TimeUnit.SECONDS);
+			other.shutdown();
+			verify(chatEvents).messageSent(fast);
+			verify(chatEvents, never()).messageSent(slow);
+
+			complete(TransactionSynchronization.STATUS_COMMITTED);
+			verify(chatEvents).messageSent(slow);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void committedMessagesAreSentInSeqOrder() throws Exception {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			Message first = sequencer.append(List.of(message(10L)), this::store).get(0);
+
+			// Seq 2 commits first: it waits for seq 1
+			ExecutorService other = Executors.newSingleThreadExecutor();
+			Message second = other.submit(() -> inTransaction(() -> sequencer.append(List.of(message(10L)), this::store),
+					TransactionSynchronization.STATUS_COMMITTED).get(0)).get(5, TimeUnit.SECONDS);
+			other.shutdown();
+			verify(chatEvents, never()).messageSent(any());
+
+			complete(TransactionSynchronization.STATUS_COMMITTED);
+			InOrder sent = inOrder(chatEvents);
+			sent.verify(chatEvents).messageSent(first);
+			sent.verify(chatEvents).messageSent(second);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void rolledBackMessagesAreNeverSentButReleaseTheOnesAfterThem() throws Exception {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			Message rolledBack = sequencer.append(List.of(message(10L)), this::store).get(0);
+
+			ExecutorService other = Executors.newSingleThreadExecutor();
+			Message later = other.submit(() -> inTransaction(() -> sequencer.append(List.of(message(10L)), this::store),
+					TransactionSynchronization.STATUS_COMMITTED).get(0)).get(5, TimeUnit.SECONDS);
+			other.shutdown();
+
+			complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+			verify(chatEvents, never()).messageSent(rolledBack);
+			verify(chatEvents).messageSent(later);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void messagesSentByTheCallerAreNotSentAgain() {
+		Message message = sequencer.append(List.of(message(10L)), false, this::store).get(0);
+
+		assertThat(message.getSeq()).isEqualTo(1L);
+		verify(chatEvents, never()).messageSent(any());
+	}
+
+	private List<Message> store(List<Message> messages) {
+		synchronized (stored) {
+			for (Message message : messages) {
+				message.setId(ids.incrementAndGet());
+				stored.add(message);
+			}
+		}
+		return messages;
+	}
+
+	private List<Long> seqsInIdOrder(Long chatId) {
+		synchronized (stored) {
+			return stored.stream()
+					.filter(m -> m.getChat().getId().equals(chatId))
+					.sorted(Comparator.comparing(Message::getId))
+					.map(Message::getSeq)
+					.toList();
+		}
+	}
+
+	// Runs the action as a transaction on this thread that ends with the given status
+	private static List<Message> inTransaction(Supplier<List<Message>> action, int status) {
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			List<Message> result = action.get();
+			complete(status);
+			return result;
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private static void complete(int status) {
+		for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+			sync.afterCompletion(status);
+		}
+	}
+
+	private static Message message(Long chatId) {
+		Chat chat = new Chat();
+		chat.setId(chatId);
+		return new Message("hello", null, chat);
+	}
+}
@@ -0,0 +1,76 @@
+package com.example.chat.service;
+
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.repository.ChatMemberRepository;
+import com.example.chat.repository.ChatRepository;
+import com.example.chat.repository.InboxRepository;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.store.MessageStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class InboxServiceTest {
+
+	private InboxRepository inboxRepository;
+	private InboxService inbox;
+	private final User alice = user(1L, "alice");
+	private final User bob = user(2L, "bob");
+
+	@BeforeEach
+	void setUp() {
+		inboxRepository = mock(InboxRepository.class);
+		ChatMemberRepository chatMemberRepository = mock(ChatMemberRepository.class);
+		when(chatMemberRepository.findUserIdsByChat(any())).thenReturn(List.of(1L, 2L));
+		inbox = new InboxService(inboxRepository, chatMemberRepository, mock(ChatRepository.class),
+				mock(UserRepository.class), mock(MessageStore.class), mock(VersionStamps.class), 100, 600);
+	}
+
+	@Test
+	void oneUpdatePerChatWithTheLastMessageAsPreview() {
+		Chat first = chat(10L);
+		Chat second = chat(20L);
+
+		inbox.recordMessages(List.of(
+				new Message("a1", alice, first),
+				new Message("a2", alice, first),
+				new Message("b1", bob, second),
+				new Message("a3", alice, first)));
+
+		verify(inboxRepository).recordMessages(eq(10L), eq(1L), eq("alice"), eq("a3"), any(), eq(3));
+		verify(inboxRepository).recordMessages(eq(20L), eq(2L), eq("bob"), eq("b1"), any(), eq(1));
+		verify(inboxRepository, times(2)).recordMessages(any(), any(), any(), any(), any(), anyInt());
+		verify(inboxRepository, never()).setUnread(any(), any(), anyInt());
+	}
+
+	@Test
+	void earlierAuthorOfTheBatchHasOnlyTheLaterMessagesUnread() {
+		Chat chat = chat(10L);
+
+		inbox.recordMessages(List.of(
+				new Message("a1", alice, chat),
+				new Message("b1", bob, chat),
+				new Message("b2", bob, chat)));
+
+		verify(inboxRepository).recordMessages(eq(10L), eq(2L), eq("bob"), eq("b2"), any(), eq(3));
+		verify(inboxRepository).setUnread(10L, 1L, 2);
+		verifyNoMoreInteractions(inboxRepository);
+	}
+
+	private static User user(Long id, String username) {
+		User user = new User(username, "secret");
+		user.setId(id);
+		return user;
+	}
+
+	private static Chat chat(Long id) {
+		Chat chat = new Chat();
+		chat.setId(id);
+		return chat;
+	}
+}
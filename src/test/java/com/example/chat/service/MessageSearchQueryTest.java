@@ -0,0 +1,63 @@
+package com.example.chat.service;
+
+import com.example.chat.DatabaseTest;
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the search queries against H2: every term must match, more occurrences rank first
+class MessageSearchQueryTest extends DatabaseTest {
+
+	@Autowired
+	private MessageSearchService searchService;
+	@Autowired
+	private MessageService messageService;
+
+	private User alice;
+	private User carol;
+	private Chat chat;
+
+	@BeforeEach
+	void createChat() {
+		List<User> users = createUsers("alice", "carol");
+		alice = users.get(0);
+		carol = users.get(1);
+		chat = createGroup(List.of(alice));
+		messageService.saveAll(List.of(
+				new Message("Lunch today?", alice, chat),
+				new Message("lunch, LUNCH, lunch tomorrow", alice, chat),
+				new Message("not today", alice, chat),
+				new Message("lunch", alice, chat)));
+	}
+
+	@Test
+	void everyTermMustMatch() {
+		assertThat(contents(searchService.searchChat(chat.getId(), "today lunch", 0, 10))).containsExactly("Lunch today?");
+		assertThat(searchService.searchChat(chat.getId(), "lunch dinner", 0, 10)).isEmpty();
+	}
+
+	@Test
+	void moreOccurrencesRankFirstThenNewest() {
+		assertThat(contents(searchService.searchChat(chat.getId(), "lunch", 0, 10)))
+				.containsExactly("lunch, LUNCH, lunch tomorrow", "lunch", "Lunch today?");
+		assertThat(contents(searchService.searchChat(chat.getId(), "lunch", 1, 2))).containsExactly("Lunch today?");
+	}
+
+	@Test
+	void onlyMembersSearchTheChat() {
+		assertThat(searchService.isMember(alice.getId(), chat.getId())).isTrue();
+		assertThat(searchService.isMember(carol.getId(), chat.getId())).isFalse();
+		assertThat(searchService.searchUserChats(carol.getId(), "lunch", 0, 10)).isEmpty();
+	}
+
+	private static List<String> contents(List<Message> messages) {
+		return messages.stream().map(Message::getContent).toList();
+	}
+}
@@ -0,0 +1,30 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageSearchServiceTest {
+
+	@Test
+	void tokenizeLowercasesAndCountsTerms() {
+		Map<String, Integer> terms = MessageSearchService.tokenize("Lunch at 12? LUNCH, then coffee-break.");
+
+		assertThat(terms).containsOnly(
+				Map.entry("lunch", 2),
+				Map.entry("at", 1),
+				Map.entry("12", 1),
+				Map.entry("then", 1),
+				Map.entry("coffee", 1),
+				Map.entry("break", 1));
+	}
+
+	@Test
+	void tokenizeSkipsSingleCharactersAndEmptyText() {
+		assertThat(MessageSearchService.tokenize("a b c")).isEmpty();
+		assertThat(MessageSearchService.tokenize(null)).isEmpty();
+		assertThat(MessageSearchService.tokenize("Привет мир")).containsOnlyKeys("привет", "мир");
+	}
+}
@@ -0,0 +1,130 @@
+package com.example.chat.service;
+
+import com.example.chat.model.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class MessageWriterTest {
+
+	private final MessageService messageService = mock(MessageService.class);
+	private final ChatEvents chatEvents = mock(ChatEvents.class);
+	private MessageWriter writer;
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		if (writer != null) writer.shutdown();
+	}
+
+	@Test
+	void syncSaveFailureFailsTheAck() {
+		writer = writer(MessageWriter.Mode.SYNC, MessageWriter.Durability.AFTER_COMMIT, 0);
+		when(messageService.save(any())).thenThrow(new IllegalStateException("constraint violated"));
+
+		CompletableFuture<Void> ack = writer.write(new Message("hello", null, null));
+
+		assertThat(ack).isCompletedExceptionally();
+	}
+
+	@Test
+	void writeBehindSavesQueuedMessagesAsOneBatchAndAcksAfterCommit() throws Exception {
+		CountDownLatch commit = new CountDownLatch(1);
+		when(messageService.saveAll(any(), anyBoolean())).thenAnswer(inv -> {
+			commit.await();
+			return inv.getArgument(0);
+		});
+		writer = writer(MessageWriter.Mode.WRITE_BEHIND, MessageWriter.Durability.AFTER_COMMIT, 200);
+
+		List<CompletableFuture<Void>> acks = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			acks.add(writer.write(new Message("m" + i, null, null)));
+		}
+		Thread.sleep(300); // Past the linger, the batch is being saved
+		assertThat(acks).noneMatch(CompletableFuture::isDone);
+
+		commit.countDown();
+		CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<Message>> batches = ArgumentCaptor.forClass(List.class);
+		verify(messageService, times(1)).saveAll(batches.capture(), eq(true));
+		assertThat(batches.getValue()).extracting(Message::getContent).containsExactly("m0", "m1", "m2");
+	}
+
+	@Test
+	void afterEnqueueAcksBeforeTheBatchIsSaved() {
+		CountDownLatch commit = new CountDownLatch(1);
+		when(messageService.saveAll(any(), anyBoolean())).thenAnswer(inv -> {
+			commit.await();
+			return inv.getArgument(0);
+		});
+		writer = writer(MessageWriter.Mode.WRITE_BEHIND, MessageWriter.Durability.AFTER_ENQUEUE, 0);
+
+		Message message = new Message("hello", null, null);
+		CompletableFuture<Void> ack = writer.write(message);
+
+		assertThat(ack).isCompleted();
+		verify(chatEvents).messageSent(message);
+		commit.countDown();
+		// Already sent, the save must not send it again
+		verify(messageService, timeout(5000)).saveAll(eq(List.of(message)), eq(false));
+	}
+
+	@Test
+	void badMessageInABatchOnlyFailsItself() throws Exception {
+		when(messageService.saveAll(any(), anyBoolean())).thenThrow(new IllegalStateException("batch rolled back"));
+		when(messageService.save(any(), anyBoolean())).thenAnswer(inv -> {
+			Message message = inv.getArgument(0);
+			if (message.getContent().equals("bad")) throw new IllegalStateException("constraint violated");
+			return message;
+		});
+		writer = writer(MessageWriter.Mode.WRITE_BEHIND, MessageWriter.Durability.AFTER_COMMIT, 200);
+
+		CompletableFuture<Void> good = writer.write(new Message("good", null, null));
+		CompletableFuture<Void> bad = writer.write(new Message("bad", null, null));
+		CompletableFuture<Void> alsoGood = writer.write(new Message("also good", null, null));
+
+		CompletableFuture.allOf(good, alsoGood).get(5, TimeUnit.SECONDS);
+		assertThat(bad).failsWithin(5, TimeUnit.SECONDS);
+		verify(messageService, times(3)).save(any(), eq(true));
+	}
+
+	@Test
+	void shutdownCommitsEverythingStillQueued() throws Exception {
+		List<String> saved = new ArrayList<>();
+		when(messageService.saveAll(any(), anyBoolean())).thenAnswer(inv -> {
+			List<Message> batch = inv.getArgument(0);
+			Thread.sleep(50);
+			synchronized (saved) {
+				batch.forEach(m -> saved.add(m.getContent()));
+			}
+			return batch;
+		});
+		writer = writer(MessageWriter.Mode.WRITE_BEHIND, MessageWriter.Durability.AFTER_ENQUEUE, 0);
+		for (int i = 0; i < 20; i++) {
+			writer.write(new Message("m" + i, null, null));
+		}
+
+		writer.shutdown();
+
+		synchronized (saved) {
+			assertThat(saved).hasSize(20);
+		}
+		writer = null;
+	}
+
+	private MessageWriter writer(MessageWriter.Mode mode, MessageWriter.Durability durability, long lingerMs) {
+		MessageWriter created = new MessageWriter(messageService, chatEvents, mode, durability, 5, lingerMs, 100);
+		created.start();
+		return created;
+	}
+}
@@ -0,0 +1,147 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class OutboundQueueTest {
+
+	private static final long NO_LIMIT = Long.MAX_VALUE;
+
+	private WebSocketSession session;
+	private List<String> delivered;
+	// Send tasks are held here until the test runs them, like a busy send pool
+	private Queue<Runnable> sendTasks;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		session = mock(WebSocketSession.class);
+		when(session.isOpen()).thenReturn(true);
+		delivered = new ArrayList<>();
+		doAnswer(inv -> delivered.add(((TextMessage) inv.getArgument(0)).getPayload()))
+				.when(session).sendMessage(any());
+		sendTasks = new ArrayDeque<>();
+	}
+
+	@Test
+	void dropOldestKeepsTheNewestFrames() {
+		OutboundQueue queue = queue(2, NO_LIMIT, OutboundQueue.OverflowPolicy.DROP_OLDEST);
+		queue.enqueue(text("1"), null);
+		queue.enqueue(text("2"), null);
+		queue.enqueue(text("3"), null);
+
+		assertThat(queue.depth()).isEqualTo(2);
+		assertThat(queue.droppedCount()).isEqualTo(1);
+		runSends();
+		assertThat(delivered).containsExactly("2", "3");
+	}
+
+	@Test
+	void keyedFrameReplacesTheQueuedFrameWithTheSameKey() {
+		OutboundQueue queue = queue(10, NO_LIMIT, OutboundQueue.OverflowPolicy.DROP_OLDEST);
+		queue.enqueue(text("typing a"), "typing:1");
+		queue.enqueue(text("message"), null);
+		queue.enqueue(text("typing b"), "typing:1");
+		queue.enqueue(text("other chat"), "typing:2");
+
+		runSends();
+		assertThat(delivered).containsExactly("typing b", "message", "other chat");
+	}
+
+	@Test
+	void slowSessionHoldsOneTypingFramePerChat() {
+		OutboundQueue queue = queue(1000, NO_LIMIT, OutboundQueue.OverflowPolicy.DROP_OLDEST);
+		for (int i = 0; i < 500; i++) {
+			queue.enqueue(text("typing " + i), "typing:1");
+		}
+
+		// Nothing was sent meanwhile, yet only the latest state is queued
+		assertThat(queue.depth()).isEqualTo(1);
+		assertThat(queue.droppedCount()).isZero();
+		runSends();
+		assertThat(delivered).containsExactly("typing 499");
+	}
+
+	@Test
+	void coalesceDropsTheOldestKeyedFrameBeforeAMessage() {
+		OutboundQueue queue = queue(2, NO_LIMIT, OutboundQueue.OverflowPolicy.COALESCE);
+		queue.enqueue(text("message 1"), null);
+		queue.enqueue(text("typing"), "typing:1");
+		queue.enqueue(text("message 2"), null);
+
+		assertThat(queue.droppedCount()).isEqualTo(1);
+		runSends();
+		assertThat(delivered).containsExactly("message 1", "message 2");
+	}
+
+	@Test
+	void disconnectClosesTheSessionWhenTheBufferIsFull() throws Exception {
+		OutboundQueue queue = queue(1, NO_LIMIT, OutboundQueue.OverflowPolicy.DISCONNECT);
+		queue.enqueue(text("1"), null);
+		queue.enqueue(text("2"), null);
+		queue.enqueue(text("3"), null);
+
+		verify(session).close(argThat((CloseStatus status) -> status.getCode() == CloseStatus.SESSION_NOT_RELIABLE.getCode()));
+		assertThat(queue.depth()).isZero();
+		runSends();
+		assertThat(delivered).isEmpty();
+	}
+
+	@Test
+	void stalledSendIsClosedWhileTheSendThreadIsStillBlocked() throws Exception {
+		CountDownLatch released = new CountDownLatch(1);
+		CountDownLatch sending = new CountDownLatch(1);
+		doAnswer(inv -> {
+			sending.countDown();
+			released.await(); // A client that stopped reading
+			return null;
+		}).when(session).sendMessage(any());
+		ExecutorService sendPool = Executors.newSingleThreadExecutor();
+		try {
+			OutboundQueue queue = new OutboundQueue(session, sendPool, Runnable::run, 10,
+					TimeUnit.MILLISECONDS.toNanos(20), OutboundQueue.OverflowPolicy.DROP_OLDEST);
+			queue.enqueue(text("1"), null);
+			assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+			assertThat(queue.checkSendTime(System.nanoTime())).isFalse();
+			Thread.sleep(50);
+			// What the watchdog does; no new frame is needed for the limit to apply
+			assertThat(queue.checkSendTime(System.nanoTime())).isTrue();
+
+			verify(session).close(any(CloseStatus.class));
+		} finally {
+			released.countDown();
+			sendPool.shutdownNow();
+		}
+	}
+
+	private OutboundQueue queue(int capacity, long sendTimeLimitNanos, OutboundQueue.OverflowPolicy policy) {
+		return new OutboundQueue(session, sendTasks::add, Runnable::run, capacity, sendTimeLimitNanos, policy);
+	}
+
+	private void runSends() {
+		Runnable task;
+		while ((task = sendTasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	private static WebSocketMessage<?> text(String payload) {
+		return new TextMessage(payload);
+	}
+}
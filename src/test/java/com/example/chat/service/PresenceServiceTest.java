@@ -0,0 +1,106 @@
+package com.example.chat.service;
+
+import com.example.chat.model.ChatMember;
+import com.example.chat.model.User;
+import com.example.chat.repository.ChatMemberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class PresenceServiceTest {
+
+	private ChatRoutingIndex index;
+	private SessionOutbox sessionOutbox;
+	private PresenceService presence;
+	private WebSocketSession alice;
+	private WebSocketSession bob;
+
+	@BeforeEach
+	void setUp() {
+		ChatMemberRepository chatMemberRepository = mock(ChatMemberRepository.class);
+		when(chatMemberRepository.findByUserId(1L)).thenReturn(List.of(new ChatMember(10L, 1L)));
+		when(chatMemberRepository.findByUserId(2L)).thenReturn(List.of(new ChatMember(10L, 2L)));
+		index = new ChatRoutingIndex(chatMemberRepository);
+
+		EntityCache entityCache = mock(EntityCache.class);
+		when(entityCache.findUser(1L)).thenReturn(Optional.of(new User("alice", "secret")));
+		when(entityCache.findUser(2L)).thenReturn(Optional.of(new User("bob", "secret")));
+		sessionOutbox = mock(SessionOutbox.class);
+		// Typing: one event a minute, lasting a minute
+		presence = new PresenceService(index, sessionOutbox, entityCache, mock(ChatMetrics.class), true, 60_000, 60_000);
+
+		alice = open(1L);
+		bob = open(2L);
+		presence.flush();
+		clearInvocations(sessionOutbox);
+	}
+
+	@Test
+	void reconnectWithinOneFlushSendsNoPresenceChange() {
+		close(bob);
+		WebSocketSession bobAgain = open(2L);
+		presence.flush();
+
+		// Only the new session's own snapshot
+		verify(sessionOutbox, never()).sendAll(argThat((Collection<WebSocketSession> s) -> s.contains(alice)), any());
+		assertThat(framesTo(bobAgain)).containsExactly("{\"type\":\"presence\",\"snapshot\":true,\"online\":[\"alice\"]}");
+	}
+
+	@Test
+	void disconnectReachesTheOtherMembersOnce() {
+		close(bob);
+		presence.flush();
+		presence.flush();
+
+		assertThat(framesTo(alice)).containsExactly("{\"type\":\"presence\",\"online\":[],\"offline\":[\"bob\"]}");
+	}
+
+	@Test
+	void typingIsRateLimitedAndOnlyChangesAreSent() {
+		presence.typing(2L, 10L, true);
+		presence.typing(2L, 10L, true);
+		presence.typing(2L, 99L, true); // Not bob's chat
+		presence.flush();
+		presence.flush();
+
+		assertThat(presence.stats()).containsEntry("typingEventsAccepted", 1L).containsEntry("typingEventsDropped", 1L);
+		ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+		verify(sessionOutbox, times(1)).sendAll(any(), frames.capture(), eq("typing:10"));
+		assertThat(frames.getValue().getPayload()).isEqualTo("{\"type\":\"typing\",\"chatId\":10,\"users\":[\"bob\"]}");
+
+		presence.messageSent(2L, 10L);
+		presence.flush();
+
+		verify(sessionOutbox, times(2)).sendAll(any(), frames.capture(), eq("typing:10"));
+		assertThat(frames.getValue().getPayload()).isEqualTo("{\"type\":\"typing\",\"chatId\":10,\"users\":[]}");
+	}
+
+	private WebSocketSession open(Long userId) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.isOpen()).thenReturn(true);
+		index.register(session, userId);
+		presence.sessionOpened(session, userId);
+		return session;
+	}
+
+	private void close(WebSocketSession session) {
+		presence.sessionClosing(session);
+		index.unregister(session);
+	}
+
+	// Presence frames queued for the session, in order
+	private List<String> framesTo(WebSocketSession session) {
+		ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+		verify(sessionOutbox, atLeast(0)).sendAll(argThat((Collection<WebSocketSession> s) -> s != null && s.contains(session)), frames.capture());
+		return frames.getAllValues().stream().map(TextMessage::getPayload).toList();
+	}
+}
@@ -0,0 +1,41 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SearchIndexBackfillTest {
+
+	private final MessageSearchService searchService = mock(MessageSearchService.class);
+	private final SearchIndexBackfill backfill = new SearchIndexBackfill(searchService, 100);
+
+	@Test
+	void indexesOneBatchPerRunDownFromWhereTheIndexStops() {
+		when(searchService.backfillStart()).thenReturn(500L);
+		when(searchService.indexBatchBefore(500L, 100)).thenReturn(380L);
+		when(searchService.indexBatchBefore(380L, 100)).thenReturn(1L);
+
+		backfill.indexNextBatch();
+		assertThat(backfill.isComplete()).isFalse();
+		assertThat(backfill.stats()).containsEntry("nextBelowId", 380L).containsEntry("batches", 1L);
+
+		backfill.indexNextBatch();
+		backfill.indexNextBatch(); // Nothing below 1
+		assertThat(backfill.isComplete()).isTrue();
+
+		backfill.indexNextBatch();
+		verify(searchService, times(1)).backfillStart();
+		verify(searchService, times(3)).indexBatchBefore(anyLong(), anyInt());
+	}
+
+	@Test
+	void emptyDatabaseIsCompleteAfterTheFirstRun() {
+		when(searchService.backfillStart()).thenReturn(0L);
+
+		backfill.indexNextBatch();
+
+		assertThat(backfill.isComplete()).isTrue();
+		assertThat(backfill.stats()).containsEntry("batches", 0L);
+	}
+}
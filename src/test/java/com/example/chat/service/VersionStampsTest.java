@@ -0,0 +1,67 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VersionStampsTest {
+
+	private final VersionStamps stamps = new VersionStamps();
+
+	@Test
+	void stampsChangeOnlyForWhatChanged() {
+		String alice = stamps.inboxEtag(1L);
+		String bob = stamps.inboxEtag(2L);
+		String chat = stamps.chatEtag(10L);
+		assertThat(stamps.inboxEtag(1L)).isEqualTo(alice).startsWith("W/\"");
+
+		stamps.inboxesChanged(List.of(1L));
+		stamps.chatChanged(11L);
+
+		assertThat(stamps.inboxEtag(1L)).isNotEqualTo(alice);
+		assertThat(stamps.inboxEtag(2L)).isEqualTo(bob);
+		assertThat(stamps.chatEtag(10L)).isEqualTo(chat);
+		assertThat(stamps.chatEtag(11L)).isNotEqualTo(stamps.chatEtag(10L));
+	}
+
+	@Test
+	void aStampNeverComesBack() {
+		String before = stamps.chatEtag(10L);
+		stamps.chatChanged(10L);
+		String first = stamps.chatEtag(10L);
+		stamps.chatChanged(10L);
+
+		assertThat(stamps.chatEtag(10L)).isNotIn(before, first);
+	}
+
+	@Test
+	void insideATransactionTheStampMovesOnlyOnceItCompletes() {
+		String before = stamps.inboxEtag(1L);
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			stamps.inboxesChanged(List.of(1L));
+			// Readers still get the old rows, they must keep the old stamp
+			assertThat(stamps.inboxEtag(1L)).isEqualTo(before);
+
+			for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+				sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertThat(stamps.inboxEtag(1L)).isNotEqualTo(before);
+	}
+
+	@Test
+	void aRestartNeverMatchesOldStamps() throws InterruptedException {
+		String before = stamps.chatEtag(10L);
+		Thread.sleep(2); // The epoch is the start time in milliseconds
+
+		assertThat(new VersionStamps().chatEtag(10L)).isNotEqualTo(before);
+	}
+}
@@ -0,0 +1,115 @@
+package com.example.chat.store;
+
+import com.example.chat.DatabaseTest;
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.service.MessageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A chat with its 6 oldest messages archived in segments of 4 and 2, and 4 still in the table
+class MessageArchiveTest extends DatabaseTest {
+
+	@Autowired
+	private MessageArchiver archiver;
+	@Autowired
+	private MessageArchive archive;
+	@Autowired
+	private MessageStore messageStore;
+	@Autowired
+	private MessageService messageService;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Chat chat;
+	// Oldest first
+	private List<Long> ids;
+
+	@BeforeEach
+	void createArchivedChat() {
+		User alice = createUsers("alice").get(0);
+		chat = createGroup(List.of(alice));
+
+		List<Message> messages = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			Message m = new Message("m" + i, alice, chat);
+			m.setSentAt(LocalDateTime.now().minusDays(i < 6 ? 40 : 1));
+			messages.add(m);
+		}
+		ids = messageService.saveAll(messages).stream().map(Message::getId).toList();
+
+		archiver.archiveOldMessages();
+	}
+
+	@Test
+	void archiverMovesTheOldPrefixIntoSegments() {
+		assertThat(archive.lastArchivedId(chat.getId())).isEqualTo(ids.get(5));
+		assertThat(archive.pageAfter(chat.getId(), 0, 100)).extracting(Message::getContent)
+				.containsExactly("m0", "m1", "m2", "m3", "m4", "m5");
+
+		archiver.archiveOldMessages(); // Nothing old enough is left
+		assertThat(archive.lastArchivedId(chat.getId())).isEqualTo(ids.get(5));
+	}
+
+	@Test
+	void findByIdsReadsBothSidesOfTheBoundary() {
+		List<Message> found = messageStore.findByIds(List.of(ids.get(1), ids.get(4), ids.get(5), ids.get(6), ids.get(9)));
+
+		assertThat(found).extracting(Message::getContent).containsExactlyInAnyOrder("m1", "m4", "m5", "m6", "m9");
+		assertThat(messageStore.findByIds(List.of(ids.get(9) + 1000))).isEmpty();
+	}
+
+	@Test
+	void pagesContinueAcrossTheBoundary() {
+		Long chatId = chat.getId();
+
+		// Newest first: 4 hot messages, then into the second segment and on into the first
+		List<Message> back = messageStore.pageBefore(chatId, Long.MAX_VALUE, 5);
+		assertThat(back).extracting(Message::getContent).containsExactly("m9", "m8", "m7", "m6", "m5");
+		back = messageStore.pageBefore(chatId, back.get(back.size() - 1).getId(), 3);
+		assertThat(back).extracting(Message::getContent).containsExactly("m4", "m3", "m2");
+
+		// Oldest first: from the first segment through the second into the table
+		List<Message> forward = messageStore.pageAfter(chatId, ids.get(2), 5);
+		assertThat(forward).extracting(Message::getContent).containsExactly("m3", "m4", "m5", "m6", "m7");
+		forward = messageStore.pageAfter(chatId, forward.get(forward.size() - 1).getId(), 5);
+		assertThat(forward).extracting(Message::getContent).containsExactly("m8", "m9");
+	}
+
+	@Test
+	void deletedSegmentFilesOutliveARolledBackPurge() throws IOException {
+		Long chatId = chat.getId();
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			archive.deleteChat(chatId);
+			status.setRollbackOnly();
+		});
+
+		assertThat(segmentFiles(chatId)).hasSize(2);
+		assertThat(archive.pageAfter(chatId, 0, 100)).hasSize(6);
+
+		archive.deleteChat(chatId);
+
+		assertThat(segmentFiles(chatId)).isEmpty();
+		assertThat(archive.pageAfter(chatId, 0, 100)).isEmpty();
+	}
+
+	private static List<Path> segmentFiles(Long chatId) throws IOException {
+		try (Stream<Path> files = Files.list(Path.of("target/test-archive", "chat-" + chatId))) {
+			return files.filter(f -> f.toString().endsWith(".seg.gz")).toList();
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.example.chat.store;
+
+import com.example.chat.model.Chat;
+import com.example.chat.model.Message;
+import com.example.chat.model.User;
+import com.example.chat.repository.MessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class SegmentMessageStoreTest {
+
+	@TempDir
+	Path dir;
+
+	private MessageRepository messageRepository;
+	private SegmentMessageStore store;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		messageRepository = mock(MessageRepository.class);
+		when(messageRepository.findMaxId()).thenReturn(100L);
+		store = open();
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		store.close();
+	}
+
+	@Test
+	void pagesByChatInBothDirections() {
+		store.append(List.of(message(1L, "a1"), message(2L, "b1"), message(1L, "a2"), message(1L, "a3")));
+
+		assertThat(store.pageBefore(1L, Long.MAX_VALUE, 2)).extracting(Message::getContent).containsExactly("a3", "a2");
+		assertThat(store.pageAfter(1L, 0L, 10)).extracting(Message::getContent).containsExactly("a1", "a2", "a3");
+		assertThat(store.pageAfter(2L, 0L, 10)).extracting(Message::getId).containsExactly(102L);
+		assertThat(store.pageBefore(3L, Long.MAX_VALUE, 10)).isEmpty();
+	}
+
+	@Test
+	void rebuildsIndexAfterRestartAndHonorsTombstones() throws IOException {
+		store.append(List.of(message(1L, "keep"), message(2L, "gone")));
+		store.deleteChat(2L);
+		store.close();
+
+		store = open();
+		assertThat(store.pageAfter(1L, 0L, 10)).extracting(Message::getContent).containsExactly("keep");
+		assertThat(store.pageAfter(2L, 0L, 10)).isEmpty();
+		assertThat(store.findByIds(List.of(101L, 102L))).extracting(Message::getId).containsExactly(101L);
+
+		// Ids continue after the last stored one
+		assertThat(store.append(List.of(message(1L, "next"))).get(0).getId()).isEqualTo(103L);
+	}
+
+	@Test
+	void numbersMessagesPerChatAndReplaysAfterSeq() throws IOException {
+		store.append(List.of(message(1L, "a1"), message(2L, "b1"), message(1L, "a2"), message(1L, "a3")));
+		store.close();
+
+		store = open();
+		assertThat(store.lastSeq(1L)).isEqualTo(3L);
+		assertThat(store.lastSeq(2L)).isEqualTo(1L);
+		assertThat(store.lastSeq(3L)).isZero();
+		assertThat(store.pageAfterSeq(1L, 1L, 10)).extracting(Message::getContent).containsExactly("a2", "a3");
+		assertThat(store.pageAfterSeq(1L, 3L, 10)).isEmpty();
+
+		assertThat(store.append(List.of(message(2L, "b2"))).get(0).getSeq()).isEqualTo(2L);
+	}
+
+	@Test
+	void dropsTornTailOnRecovery() throws IOException {
+		store.append(List.of(message(1L, "first"), message(1L, "second")));
+		store.close();
+
+		// Corrupt the second record's body, as if the process died while writing it
+		Message first = message(1L, "first");
+		first.setId(101L);
+		int secondOffset = MessageRecordCodec.messageSize(StoredMessage.of(first));
+		try (FileChannel channel = FileChannel.open(dir.resolve("segment-000001.log"), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {42}), secondOffset + MessageRecordCodec.HEADER_SIZE + 3);
+		}
+
+		store = open();
+		assertThat(store.pageAfter(1L, 0L, 10)).extracting(Message::getContent).containsExactly("first");
+
+		store.append(List.of(message(1L, "after crash")));
+		store.close();
+		store = open();
+		assertThat(store.pageAfter(1L, 0L, 10)).extracting(Message::getContent).containsExactly("first", "after crash");
+	}
+
+	@Test
+	void rolledBackAppendIsTombstoned() throws IOException {
+		store.append(List.of(message(1L, "committed")));
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			store.append(List.of(message(1L, "rolled back"), message(2L, "rolled back too")));
+			for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+				sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertThat(store.pageAfter(1L, 0L, 10)).extracting(Message::getContent).containsExactly("committed");
+		assertThat(store.lastSeq(1L)).isEqualTo(1L);
+		assertThat(store.findByIds(List.of(102L, 103L))).isEmpty();
+
+		store.close();
+		store = open();
+		assertThat(store.pageAfter(1L, 0L, 10)).extracting(Message::getContent).containsExactly("committed");
+		assertThat(store.pageAfter(2L, 0L, 10)).isEmpty();
+		// Ids of the rolled back messages are not handed out again
+		assertThat(store.append(List.of(message(1L, "next"))).get(0).getId()).isEqualTo(104L);
+	}
+
+	@Test
+	void rejectsSegmentSizesAMappingCannotHold() {
+		assertThatThrownBy(() -> new SegmentMessageStore(messageRepository, dir.toString(), 2048, false))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new SegmentMessageStore(messageRepository, dir.toString(), 0, false))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private SegmentMessageStore open() throws IOException {
+		SegmentMessageStore opened = new SegmentMessageStore(messageRepository, dir.toString(), 1, false);
+		opened.open();
+		return opened;
+	}
+
+	private static Message message(Long chatId, String content) {
+		User author = new User("alice", "secret");
+		author.setId(7L);
+		Chat chat = new Chat();
+		chat.setId(chatId);
+		return new Message(content, author, chat);
+	}
+}